@@ -7,9 +7,11 @@ import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.util.stream.Collectors;
 
+import audiodrive.audio.AnalysisPrefetcher;
 import audiodrive.audio.AnalyzedAudio;
 import audiodrive.audio.AudioResource;
 import audiodrive.audio.Playback;
+import audiodrive.audio.SfxMixer;
 import audiodrive.model.loader.Model;
 import audiodrive.model.track.Track;
 import audiodrive.ui.components.Scene;
@@ -65,11 +67,14 @@ public class AudioDrive {
 		Window.setFramerate(Settings.getInteger("window.framerate"));
 		Window.setAntialiasingEnabled(Settings.getBoolean("window.antialiasing"));
 		Window.setVSyncEnabled(Settings.getBoolean("window.vsync"));
+		if (Settings.getBoolean("audio.analyzation.prefetch")) AnalysisPrefetcher.Default.start(new File(Settings.get("music.directory")));
 		Window.open(Scene.get(TitleScene.class));
 	}
 	
 	public static void exit() {
 		Scene.destroy();
+		SfxMixer.Default.close();
+		AnalysisPrefetcher.Default.close();
 		Window.close();
 		Settings.save();
 		Log.info("Ended.");
@@ -21,9 +21,19 @@ public class Settings {
 	
 	public Settings(String filename) {
 		this.filename = filename;
+		set("audio.analyzation.bands", "32");
+		set("audio.analyzation.bands.scale", "Logarithmic");
+		set("audio.analyzation.cache.directory", "cache");
+		set("audio.analyzation.cache.size", "1024");
+		set("audio.analyzation.memory", "512");
+		set("audio.analyzation.onsets", "Spectral Flux");
+		set("audio.analyzation.overlap", "0");
+		set("audio.analyzation.precision", "Float");
+		set("audio.analyzation.prefetch", "true");
 		set("audio.analyzation.threshold", "1.8");
+		set("audio.analyzation.threshold.method", "Mean");
 		set("audio.analyzation.window", "20");
-		set("audio.duration.limit", "15");
+		set("audio.analyzation.windowfunction", "Hamming");
 		set("block.collectable.color", "1,1,1,1");
 		set("block.collectable.color.static", "true");
 		set("block.collectable.glowing", "true");
@@ -59,8 +69,10 @@ public class Settings {
 		set("player.healthbar", "true");
 		set("player.model", "lightjet");
 		set("sound.volume", "1.0");
-		set("track.smoothing", "20");
+		set("track.parameterization", "Indexed");
+		set("track.quantization", "0");
 		set("track.rings", "true");
+		set("track.smoothing", "20");
 		set("window.antialiasing", "true");
 		set("window.multisampling", "2");
 		set("window.framerate", "0");
@@ -0,0 +1,586 @@
+package audiodrive.audio;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import audiodrive.utilities.Log;
+
+/**
+ * Stores analyzation results on disk, keyed by the content of the audio file and the analyzation parameters. Spectrograms are stored with the precision of the analyzation.
+ * Entries are read back through memory-mapped I/O, mapping each channel separately, and the spectrograms are used directly from the mapped file. When the cache exceeds its size limit, the least recently used entries are removed, except for the entries pinned by the game.
+ * Content hashes of audio files are kept in an index next to the entries, so that files are only read again when their size or modification time changes.
+ */
+class AnalysisCache {
+	
+	private static final int Magic = 0x41444143; // "ADAC"
+	private static final int Version = 4;
+	private static final int HeaderSize = 10 * Integer.BYTES + 3 * Double.BYTES;
+	private static final String Extension = ".analysis";
+	private static final String HashIndex = "hashes.properties";
+	private static final int ChunkSize = 16 * 1024;
+	/** Number of pinned entries, older pins are released. */
+	private static final int PinnedCount = 4;
+	
+	/** Keys of the entries most recently selected or played, most recent first, which are never evicted. */
+	private static final Deque<String> Pinned = new ArrayDeque<>();
+	/** Hash indices by cache directory, mapping the paths of audio files to their size, modification time and content hash. */
+	private static final Map<File, Properties> HashIndices = new HashMap<>();
+	/** Content hashes of resources which aren't files, which can't change while running. */
+	private static final Map<String, String> ResourceHashes = new ConcurrentHashMap<>();
+	
+	private final File directory;
+	private final long limit;
+	
+	/**
+	 * Creates a cache in the given directory, which is limited to the given number of bytes.
+	 */
+	AnalysisCache(File directory, long limit) {
+		this.directory = directory;
+		this.limit = limit;
+	}
+	
+	/**
+	 * Protects the entry with the given key from eviction, releasing the least recently pinned entry if too many are pinned.
+	 */
+	static void pin(String key) {
+		synchronized (Pinned) {
+			Pinned.remove(key);
+			Pinned.addFirst(key);
+			while (Pinned.size() > PinnedCount) Pinned.removeLast();
+		}
+	}
+	
+	private static boolean isPinned(String key) {
+		synchronized (Pinned) {
+			return Pinned.contains(key);
+		}
+	}
+	
+	/**
+	 * Computes the cache key of an audio file analyzed with the given parameters.
+	 */
+	String key(AudioResource audio, Object... parameters) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update((hash(audio) + "v" + Version + Arrays.toString(parameters)).getBytes(StandardCharsets.UTF_8));
+			return hex(digest.digest());
+		} catch (IOException | NoSuchAlgorithmException exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+	
+	/**
+	 * Returns the content hash of the audio file. The hash of a file is taken from the hash index as long as size and modification time of the file match the indexed ones,
+	 * otherwise the file is hashed and the index updated.
+	 */
+	private String hash(AudioResource audio) throws IOException, NoSuchAlgorithmException {
+		File file = file(audio);
+		if (file == null) {
+			String hash = ResourceHashes.get(audio.getPath());
+			if (hash == null) ResourceHashes.put(audio.getPath(), hash = digest(audio));
+			return hash;
+		}
+		String path = file.getAbsolutePath();
+		String metadata = file.length() + " " + file.lastModified() + " ";
+		Properties index = hashIndex();
+		String indexed = index.getProperty(path);
+		if (indexed != null && indexed.startsWith(metadata)) return indexed.substring(metadata.length());
+		String hash = digest(audio);
+		synchronized (index) {
+			index.setProperty(path, metadata + hash);
+			if (directory.isDirectory() || directory.mkdirs()) {
+				try (OutputStream stream = new FileOutputStream(new File(directory, HashIndex))) {
+					index.store(stream, "Content hashes of audio files");
+				} catch (IOException exception) {
+					Log.debug("Couldn't write hash index.", exception);
+				}
+			}
+		}
+		return hash;
+	}
+	
+	/**
+	 * Returns the hash index of the cache directory, which is read on first use.
+	 */
+	private Properties hashIndex() {
+		synchronized (HashIndices) {
+			Properties index = HashIndices.get(directory.getAbsoluteFile());
+			if (index == null) {
+				index = new Properties();
+				File file = new File(directory, HashIndex);
+				if (file.isFile()) {
+					try (InputStream stream = new FileInputStream(file)) {
+						index.load(stream);
+					} catch (IOException exception) {
+						Log.debug("Couldn't read hash index.", exception);
+					}
+				}
+				HashIndices.put(directory.getAbsoluteFile(), index);
+			}
+			return index;
+		}
+	}
+	
+	/**
+	 * Calculates the SHA-256 hash of the content of the audio file.
+	 */
+	private static String digest(AudioResource audio) throws IOException, NoSuchAlgorithmException {
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		try (InputStream stream = audio.getUrl().openStream()) {
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = stream.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		return hex(digest.digest());
+	}
+	
+	private static String hex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+	
+	/**
+	 * Returns the file of the audio resource, or <code>null</code> if it isn't a file.
+	 */
+	private static File file(AudioResource audio) {
+		if (!"file".equals(audio.getUrl().getProtocol())) return null;
+		try {
+			return new File(audio.getUrl().toURI());
+		} catch (URISyntaxException | IllegalArgumentException exception) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Loads the analyzation results stored with the given key, or returns <code>null</code> if there are none. Samples are spilled and bands aggregated as configured for the
+	 * given analyzer.
+	 */
+	AnalyzedAudio load(String key, AudioResource resource, AudioAnalyzer analyzer) {
+		File file = file(key);
+		if (!file.isFile()) return null;
+		try (RandomAccessFile access = new RandomAccessFile(file, "r"); FileChannel channel = access.getChannel()) {
+			ByteBuffer header = read(channel, 0, HeaderSize);
+			if (header.getInt() != Magic || header.getInt() != Version) {
+				Log.debug("Discarding incompatible cache entry \"%s\".", file.getName());
+				file.delete();
+				return null;
+			}
+			float sampleRate = header.getFloat();
+			int sampleCount = header.getInt();
+			int channelCount = header.getInt();
+			int iteration = header.getInt();
+			int hop = header.getInt();
+			int frameCount = header.getInt();
+			int bandCount = header.getInt();
+			Spectrogram.Precision precision = Spectrogram.Precision.values()[header.getInt()];
+			BeatGrid beatGrid = new BeatGrid(header.getDouble(), header.getDouble(), header.getDouble());
+			long position = HeaderSize;
+			Entry[] entries = new Entry[channelCount + 1];
+			for (int c = 0; c < entries.length; c++) {
+				long entrySize = entrySize(frameCount, bandCount, precision, Integer.bitCount(read(channel, position, Integer.BYTES).getInt()));
+				entries[c] = new Entry(map(channel, position, entrySize), frameCount, bandCount, precision);
+				position += entrySize;
+			}
+			ShortBuffer[] pcm = new ShortBuffer[channelCount];
+			for (int c = 0; c < channelCount; c++) {
+				pcm[c] = map(channel, position, (long) sampleCount * Short.BYTES).asShortBuffer();
+				position += (long) sampleCount * Short.BYTES;
+			}
+			// samples are stored with their original 16 bit precision, the mix is calculated like the decoder does
+			boolean mapped = (long) sampleCount * (channelCount + 1) * Float.BYTES > analyzer.getHeapLimit();
+			FloatStorage[] storages = new FloatStorage[channelCount + 1];
+			for (int c = 0; c < storages.length; c++) {
+				storages[c] = FloatStorage.create(sampleCount, mapped);
+			}
+			short[][] chunk = new short[channelCount][ChunkSize];
+			float[][] converted = new float[channelCount + 1][ChunkSize];
+			for (int offset = 0; offset < sampleCount; offset += ChunkSize) {
+				int length = Math.min(ChunkSize, sampleCount - offset);
+				for (int c = 0; c < channelCount; c++) {
+					pcm[c].position(offset);
+					pcm[c].get(chunk[c], 0, length);
+				}
+				for (int i = 0; i < length; i++) {
+					int sum = 0;
+					for (int c = 0; c < channelCount; c++) {
+						int value = chunk[c][i];
+						converted[c][i] = value / 32768f;
+						sum += value;
+					}
+					converted[channelCount][i] = sum / (32768f * channelCount);
+				}
+				for (int c = 0; c < storages.length; c++) {
+					storages[c].put(offset, converted[c], 0, length);
+				}
+			}
+			FloatBuffer[] samples = new FloatBuffer[channelCount];
+			for (int c = 0; c < channelCount; c++) {
+				samples[c] = storages[c].slice(sampleCount);
+				storages[c].close();
+			}
+			storages[channelCount].close();
+			DecodedAudio decoded = new DecodedAudio(resource, samples, storages[channelCount].slice(sampleCount), sampleCount, sampleRate);
+			decoded.setIteration(iteration);
+			decoded.setHop(hop);
+			BandAggregation aggregation = analyzer.createBandAggregation(bandCount, sampleRate);
+			List<AnalyzedChannel> channels = new ArrayList<>(channelCount);
+			for (int c = 0; c < channelCount; c++) {
+				channels.add(entries[c].channel(decoded.getChannel(c), aggregation, analyzer.getOnsetDetector(), analyzer.createThresholding(iteration, hop)));
+			}
+			AnalyzedChannel analyzedMix = entries[channelCount].channel(decoded.getMix(), aggregation, analyzer.getOnsetDetector(), analyzer.createThresholding(iteration, hop));
+			Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+			return new AnalyzedAudio(decoded, sampleCount / decoded.getSampleRate(), channels, analyzedMix, beatGrid);
+		} catch (Exception exception) {
+			Log.debug("Couldn't read cache entry \"%s\".", exception, file.getName());
+			return null;
+		}
+	}
+	
+	/**
+	 * Stores the analyzation results with the given key, writing the spectrograms with the given precision. Only features which have been calculated are stored, the others are
+	 * calculated on first access after loading. If evicting, the least recently used entries are removed when the cache exceeds its limit, otherwise the results are only
+	 * stored if they fit into the cache.
+	 */
+	void store(String key, AnalyzedAudio audio, Spectrogram.Precision precision, boolean evicting) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			Log.debug("Couldn't create cache directory \"%s\".", directory);
+			return;
+		}
+		File file = file(key);
+		List<AnalyzedChannel> analyzed = new ArrayList<>(audio.getChannels());
+		analyzed.add(audio.getMix());
+		AnalyzationData[][] features = new AnalyzationData[analyzed.size()][];
+		long size = HeaderSize + (long) audio.getChannelCount() * audio.getSampleCount() * Short.BYTES;
+		for (int c = 0; c < features.length; c++) {
+			features[c] = Entry.features(analyzed.get(c), precision);
+			long entrySize = entrySize(audio.getIterationCount(), audio.getBandCount(), precision, Entry.count(features[c]));
+			if (entrySize > Integer.MAX_VALUE || (long) audio.getSampleCount() * Short.BYTES > Integer.MAX_VALUE) {
+				// each channel is read through a mapping of its own
+				Log.debug("Analyzation results are too large to be cached.");
+				return;
+			}
+			size += entrySize;
+		}
+		if (!evicting && size() + size > limit) {
+			Log.debug("Analyzation results of \"%s\" don't fit into the cache.", audio.getName());
+			return;
+		}
+		File temporary = new File(directory, key + ".tmp");
+		try (RandomAccessFile access = new RandomAccessFile(temporary, "rw"); FileChannel channel = access.getChannel()) {
+			access.setLength(0);
+			Writer writer = new Writer(channel);
+			writer.putInt(Magic);
+			writer.putInt(Version);
+			writer.putFloat((float) audio.getSampleRate());
+			writer.putInt(audio.getSampleCount());
+			writer.putInt(audio.getChannelCount());
+			writer.putInt(audio.getIteration());
+			writer.putInt(audio.getHop());
+			writer.putInt(audio.getIterationCount());
+			writer.putInt(audio.getBandCount());
+			writer.putInt(precision.ordinal());
+			BeatGrid beatGrid = audio.getBeatGrid();
+			writer.putDouble(beatGrid.getPeriod());
+			writer.putDouble(beatGrid.getOffset());
+			writer.putDouble(beatGrid.getConfidence());
+			for (int c = 0; c < features.length; c++) {
+				Entry.write(writer, analyzed.get(c), features[c], precision);
+			}
+			for (AnalyzedChannel analyzedChannel : audio.getChannels()) {
+				FloatBuffer samples = analyzedChannel.getSamples();
+				for (int i = 0; i < audio.getSampleCount(); i++) {
+					writer.putShort((short) Math.round(samples.get(i) * 32768f));
+				}
+			}
+			writer.flush();
+		} catch (IOException exception) {
+			Log.debug("Couldn't write cache entry \"%s\".", exception, file.getName());
+			temporary.delete();
+			return;
+		}
+		try {
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException exception) {
+			Log.debug("Couldn't write cache entry \"%s\".", exception, file.getName());
+			temporary.delete();
+			return;
+		}
+		if (evicting) evict();
+	}
+	
+	/**
+	 * Removes the least recently used entries until the cache doesn't exceed its limit.
+	 */
+	private void evict() {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(Extension));
+		if (files == null) return;
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+		long size = 0;
+		for (File file : files) {
+			long length = file.length();
+			size += length;
+			if (size <= limit || isPinned(file.getName().substring(0, file.getName().length() - Extension.length()))) continue;
+			// entries still mapped by a running game can't be deleted on every platform
+			if (file.delete()) {
+				size -= length;
+				Log.trace("Evicted cache entry \"%s\".", file.getName());
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of bytes of all entries in the cache.
+	 */
+	long size() {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(Extension));
+		if (files == null) return 0;
+		return Arrays.stream(files).mapToLong(File::length).sum();
+	}
+	
+	/**
+	 * Returns the maximum number of bytes of all entries.
+	 */
+	long limit() {
+		return limit;
+	}
+	
+	/**
+	 * Returns the number of bytes of the cache entry of results with the given number of channels, samples per channel, iterations and bands, whose spectrograms are stored
+	 * with the given precision. It's an upper bound, assuming that all features have been calculated.
+	 */
+	static long size(int channels, long samples, long frames, long bands, Spectrogram.Precision precision) {
+		return HeaderSize + (channels + 1) * entrySize(frames, bands, precision, AnalyzedChannel.Feature.values().length) + channels * samples * Short.BYTES;
+	}
+	
+	/**
+	 * Returns the number of bytes of the results of a single channel with the given number of features.
+	 */
+	private static long entrySize(long frames, long bands, Spectrogram.Precision precision, int features) {
+		return Integer.BYTES + (features * (2 + frames) + 2 * bands) * Float.BYTES + frames * bands * precision.getBytes();
+	}
+	
+	/**
+	 * Reads the given number of bytes at the given position of the file.
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+		}
+		buffer.flip();
+		return buffer;
+	}
+	
+	/**
+	 * Maps the given region of the file, which has to be smaller than 2 GB.
+	 */
+	private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if (position + size > channel.size()) throw new EOFException();
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+	
+	/**
+	 * Indicates that there are analyzation results stored with the given key.
+	 */
+	boolean contains(String key) {
+		return file(key).isFile();
+	}
+	
+	private File file(String key) {
+		return new File(directory, key + Extension);
+	}
+	
+	/**
+	 * Analyzation results of a single channel. A bit set of the stored features is followed by each of them as minimum and maximum followed by their values, then the band
+	 * statistics and the spectrogram with the precision of the entry.
+	 */
+	private static class Entry {
+		
+		private final AnalyzationData[] features = new AnalyzationData[AnalyzedChannel.Feature.values().length];
+		private final Spectrogram spectrogram;
+		
+		private Entry(ByteBuffer buffer, int frameCount, int bandCount, Spectrogram.Precision precision) {
+			int stored = buffer.getInt();
+			for (int f = 0; f < features.length; f++) {
+				if ((stored & (1 << f)) == 0) continue;
+				float minimum = buffer.getFloat();
+				float maximum = buffer.getFloat();
+				float[] values = new float[frameCount];
+				buffer.asFloatBuffer().get(values);
+				buffer.position(buffer.position() + frameCount * Float.BYTES);
+				features[f] = new AnalyzationData(values, minimum, maximum);
+			}
+			float[] minimums = new float[bandCount];
+			float[] maximums = new float[bandCount];
+			buffer.asFloatBuffer().get(minimums).get(maximums);
+			buffer.position(buffer.position() + 2 * bandCount * Float.BYTES);
+			spectrogram = Spectrogram.read(buffer, precision, frameCount, bandCount, minimums, maximums);
+		}
+		
+		/**
+		 * Creates the analyzed channel, which calculates missing threshold and peaks with the given thresholding.
+		 */
+		private AnalyzedChannel channel(Channel channel, BandAggregation aggregation, OnsetDetector detector, ChannelAnalyzer.Thresholding thresholding) {
+			AnalyzationData threshold = features[AnalyzedChannel.Feature.Threshold.ordinal()];
+			AnalyzationData peaks = features[AnalyzedChannel.Feature.Peaks.ordinal()];
+			return new AnalyzedChannel(
+				channel,
+				spectrogram,
+				aggregation.aggregate(spectrogram),
+				detector,
+				features[AnalyzedChannel.Feature.SpectralSum.ordinal()],
+				features[AnalyzedChannel.Feature.SpectralFlux.ordinal()],
+				null,
+				threshold,
+				peaks,
+				(threshold != null && peaks != null) ? null : thresholding);
+		}
+		
+		/**
+		 * Returns the features of the channel which have been calculated, or <code>null</code> for the others. If the spectrogram is stored with less precision, spectral sum
+		 * and flux are calculated beforehand, so that they don't depend on the precision.
+		 */
+		private static AnalyzationData[] features(AnalyzedChannel channel, Spectrogram.Precision precision) {
+			if (precision.getBytes() < channel.getSpectrogram().getPrecision().getBytes()) {
+				channel.getSpectralSum();
+				channel.getSpectralFlux();
+			}
+			AnalyzedChannel.Feature[] all = AnalyzedChannel.Feature.values();
+			AnalyzationData[] features = new AnalyzationData[all.length];
+			for (int f = 0; f < all.length; f++) {
+				features[f] = channel.computed(all[f]);
+			}
+			return features;
+		}
+		
+		/**
+		 * Returns the number of calculated features.
+		 */
+		private static int count(AnalyzationData[] features) {
+			int count = 0;
+			for (AnalyzationData data : features) {
+				if (data != null) count++;
+			}
+			return count;
+		}
+		
+		private static void write(Writer writer, AnalyzedChannel channel, AnalyzationData[] features, Spectrogram.Precision precision) throws IOException {
+			int stored = 0;
+			for (int f = 0; f < features.length; f++) {
+				if (features[f] != null) stored |= 1 << f;
+			}
+			writer.putInt(stored);
+			for (AnalyzationData data : features) {
+				if (data == null) continue;
+				writer.putFloat(data.minimum());
+				writer.putFloat(data.maximum());
+				for (int i = 0; i < data.size(); i++) {
+					writer.putFloat(data.get(i));
+				}
+			}
+			List<AnalyzationData> bands = channel.getBands();
+			for (AnalyzationData band : bands) {
+				writer.putFloat(band.minimum());
+			}
+			for (AnalyzationData band : bands) {
+				writer.putFloat(band.maximum());
+			}
+			Spectrogram spectrogram = channel.getSpectrogram();
+			for (int frame = 0; frame < spectrogram.getFrameCount(); frame++) {
+				spectrogram.write(frame, precision, writer.reserve(spectrogram.getBandCount() * precision.getBytes()));
+			}
+		}
+		
+	}
+	
+	/**
+	 * Writes little endian values through a buffer to a file channel.
+	 */
+	private static class Writer {
+		
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+		
+		private Writer(FileChannel channel) {
+			this.channel = channel;
+		}
+		
+		private void putInt(int value) throws IOException {
+			ensureRemaining(Integer.BYTES);
+			buffer.putInt(value);
+		}
+		
+		private void putFloat(float value) throws IOException {
+			ensureRemaining(Float.BYTES);
+			buffer.putFloat(value);
+		}
+		
+		private void putDouble(double value) throws IOException {
+			ensureRemaining(Double.BYTES);
+			buffer.putDouble(value);
+		}
+		
+		private void putShort(short value) throws IOException {
+			ensureRemaining(Short.BYTES);
+			buffer.putShort(value);
+		}
+		
+		/**
+		 * Returns the buffer, which has at least the given number of bytes remaining.
+		 */
+		private ByteBuffer reserve(int bytes) throws IOException {
+			ensureRemaining(bytes);
+			return buffer;
+		}
+		
+		private void ensureRemaining(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) flush();
+		}
+		
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,255 @@
+package audiodrive.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import audiodrive.utilities.Log;
+import audiodrive.utilities.Stopwatch;
+
+/**
+ * Analyzes audio files ahead of time on low priority background threads and stores the results in the analyzation cache, so that selected tracks don't have to be analyzed
+ * anymore. Files are analyzed in the order they are queued, the selected file is moved to the front. The analyzation pauses while the game is running. Prefetched results
+ * never evict other cache entries, prefetching stops once the cache would exceed its size limit.
+ */
+public class AnalysisPrefetcher {
+	
+	/** Prefetcher shared by the whole application. */
+	public static final AnalysisPrefetcher Default = new AnalysisPrefetcher();
+	
+	/** Maximum number of files analyzed at once, each of them keeps its decoded samples in memory. */
+	private static final int MaximumWorkers = 2;
+	/** Depth up to which subdirectories of the music directory are searched. */
+	private static final int MaximumDepth = 3;
+	private static final List<String> Extensions = Arrays.asList(".mp3", ".wav");
+	
+	private final LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<>();
+	private final Map<AudioResource, Task> tasks = new HashMap<>();
+	private final Object lock = new Object();
+	private ThreadPoolExecutor workers;
+	private volatile boolean paused;
+	private volatile boolean closed;
+	/** Estimated number of bytes of the cache entries of the files being analyzed. */
+	private long pending;
+	private boolean full;
+	
+	private AnalysisPrefetcher() {}
+	
+	/**
+	 * Starts the worker threads and queues the audio files of the given directory and its subdirectories. Does nothing if the analyzation cache is disabled.
+	 */
+	public synchronized void start(File directory) {
+		if (workers != null || closed) return;
+		if (!new AudioAnalyzer().isCaching()) {
+			Log.debug("Analyzation cache is disabled, not prefetching.");
+			return;
+		}
+		// the game and the analyzation of the selected track keep at least one core
+		int count = Math.max(1, Math.min(MaximumWorkers, Runtime.getRuntime().availableProcessors() - 1));
+		workers = new ThreadPoolExecutor(count, count, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setName("Prefetch Thread");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		workers.prestartAllCoreThreads();
+		Thread scan = new Thread(() -> {
+			try (Stream<Path> paths = Files.walk(directory.toPath(), MaximumDepth)) {
+				prefetch(paths.map(Path::toFile).collect(Collectors.toList()));
+			} catch (IOException | RuntimeException exception) {
+				Log.debug("Couldn't search \"%s\" for audio files.", exception, directory);
+			}
+		});
+		scan.setName("Prefetch Scan Thread");
+		scan.setDaemon(true);
+		scan.setPriority(Thread.MIN_PRIORITY);
+		scan.start();
+		Log.debug("Prefetching analyzations with %d threads...", count);
+	}
+	
+	/**
+	 * Queues the given audio files, which haven't been queued before. Other files are ignored.
+	 */
+	public synchronized void prefetch(Collection<File> files) {
+		if (workers == null || full) return;
+		for (File file : files) {
+			String name = file.getName().toLowerCase();
+			if (!file.isFile() || Extensions.stream().noneMatch(name::endsWith)) continue;
+			AudioResource resource = new AudioResource(file);
+			if (tasks.containsKey(resource)) continue;
+			Task task = new Task(resource);
+			tasks.put(resource, task);
+			workers.execute(task);
+		}
+	}
+	
+	/**
+	 * Moves the audio file to the front of the queue, or queues it there if it hasn't been queued yet. The selected file is analyzed even if the cache is full, its results
+	 * may evict other entries.
+	 */
+	public synchronized void prioritize(AudioResource resource) {
+		if (workers == null) return;
+		Task task = tasks.get(resource);
+		if (task == null) {
+			task = new Task(resource);
+			tasks.put(resource, task);
+		}
+		task.selected = true;
+		if (task.started) {
+			if (task.analyzer != null) task.analyzer.setEvicting(true);
+			return;
+		}
+		queue.remove(task);
+		queue.offerFirst(task);
+	}
+	
+	/**
+	 * Takes over the analyzation of the audio file. Returns the analyzer if the file is being analyzed right now, which then continues at normal priority. Otherwise the file
+	 * is removed from the queue and <code>null</code> is returned, in which case the caller analyzes it, using the cached results if there are any.
+	 */
+	public synchronized AudioAnalyzer claim(AudioResource resource) {
+		Task task = tasks.get(resource);
+		if (task == null) return null;
+		if (!task.started) {
+			// the task may have been taken from the queue by a worker already, which then skips it
+			queue.remove(task);
+			tasks.remove(resource);
+			task.abandoned = true;
+			return null;
+		}
+		if (task.analyzer == null) return null;
+		task.claimed = true;
+		task.analyzer.setEvicting(true);
+		task.thread.setPriority(Thread.NORM_PRIORITY);
+		return task.analyzer;
+	}
+	
+	/**
+	 * Stops queueing files, because the cache would exceed its limit, and abandons all queued files except for the selected ones.
+	 */
+	private synchronized void stop() {
+		if (full) return;
+		full = true;
+		Log.debug("Analyzation cache is full, not prefetching any further.");
+		queue.removeIf(runnable -> {
+			Task task = (Task) runnable;
+			if (task.selected) return false;
+			tasks.remove(task.resource);
+			return true;
+		});
+	}
+	
+	/**
+	 * Pauses the analyzation at the next block of samples, until it's resumed.
+	 */
+	public void pause() {
+		paused = true;
+	}
+	
+	public void resume() {
+		synchronized (lock) {
+			paused = false;
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Stops the worker threads, abandoning all queued files.
+	 */
+	public synchronized void close() {
+		closed = true;
+		resume();
+		if (workers != null) workers.shutdownNow();
+	}
+	
+	/**
+	 * Blocks while the prefetcher is paused.
+	 */
+	private void await() {
+		synchronized (lock) {
+			while (paused && !closed) {
+				try {
+					lock.wait();
+				} catch (InterruptedException exception) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Analyzation of a single audio file, unless its results have been cached already.
+	 */
+	private class Task implements Runnable {
+		
+		private final AudioResource resource;
+		private volatile AudioAnalyzer analyzer;
+		private volatile Thread thread;
+		private volatile boolean claimed;
+		private volatile boolean selected;
+		private volatile boolean started;
+		private volatile boolean abandoned;
+		
+		private Task(AudioResource resource) {
+			this.resource = resource;
+		}
+		
+		@Override
+		public void run() {
+			await();
+			if (closed) return;
+			AudioAnalyzer analyzer = new AudioAnalyzer().setFeatures(Collections.emptySet()).setThrottle(() -> {
+				if (!claimed) await();
+			});
+			Stopwatch stopwatch = new Stopwatch().start();
+			// the task counts as running before the cache lookup, so that claiming it meanwhile doesn't start another analyzation
+			synchronized (AnalysisPrefetcher.this) {
+				if (abandoned) return;
+				started = true;
+				thread = Thread.currentThread();
+				this.analyzer = analyzer.setEvicting(selected || claimed);
+			}
+			long estimate = 0;
+			try {
+				boolean cached = analyzer.isCached(resource);
+				if (!cached) estimate = analyzer.estimateCacheSize(resource);
+				synchronized (AnalysisPrefetcher.this) {
+					// cached results are only loaded for a claimed analyzer
+					if (cached && !claimed) return;
+					if (!cached && !selected && !claimed && analyzer.getCacheSize() + pending + estimate > analyzer.getCacheLimit()) {
+						estimate = 0;
+						stop();
+						return;
+					}
+					pending += estimate;
+				}
+				analyzer.analyze(resource);
+				if (analyzer.getResults() == null) Log.debug("Couldn't prefetch analyzation of \"%s\".", resource);
+				else Log.trace("Prefetched analyzation of \"%s\" in %.3f seconds", resource, stopwatch.stop());
+			} finally {
+				synchronized (AnalysisPrefetcher.this) {
+					pending -= estimate;
+					this.analyzer = null;
+					thread.setPriority(Thread.MIN_PRIORITY);
+					thread = null;
+				}
+			}
+		}
+		
+	}
+	
+}
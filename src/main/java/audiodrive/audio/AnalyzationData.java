@@ -2,26 +2,65 @@ package audiodrive.audio;
 
 import java.util.Iterator;
 import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
 
 import audiodrive.utilities.Arithmetic;
-import audiodrive.utilities.Primitives;
 
+/**
+ * Values of an analyzed feature for each iteration. Subclasses may provide views of other storage by overriding {@link #get(int)} and {@link #size()}.
+ */
 public class AnalyzationData implements Iterable<Float> {
 	
-	public final float[] values;
+	private final float[] values;
 	public final float maximumAbsolute;
 	public final float minimum;
 	public final float maximum;
 	
 	public AnalyzationData(float[] values) {
 		this.values = values;
-		maximumAbsolute = (float) stream().map(Math::abs).max().orElse(0.0);
-		minimum = (float) stream().min().orElse(0.0);
-		maximum = (float) stream().max().orElse(0.0);
+		float minimum = Float.POSITIVE_INFINITY;
+		float maximum = Float.NEGATIVE_INFINITY;
+		for (float value : values) {
+			if (value < minimum) minimum = value;
+			if (value > maximum) maximum = value;
+		}
+		if (values.length == 0) minimum = maximum = 0;
+		this.minimum = minimum;
+		this.maximum = maximum;
+		maximumAbsolute = Math.max(Math.abs(minimum), Math.abs(maximum));
+	}
+	
+	/**
+	 * Creates analyzation data with already known statistics, e.g. gathered while calculating the values.
+	 */
+	AnalyzationData(float[] values, float minimum, float maximum) {
+		this.values = values;
+		this.minimum = minimum;
+		this.maximum = maximum;
+		maximumAbsolute = Math.max(Math.abs(minimum), Math.abs(maximum));
+	}
+	
+	/**
+	 * Creates a view with known statistics, whose values are provided by the subclass.
+	 */
+	protected AnalyzationData(float minimum, float maximum) {
+		this(null, minimum, maximum);
 	}
 	
 	public DoubleStream stream() {
-		return Primitives.stream(values);
+		return IntStream.range(0, size()).mapToDouble(this::get);
+	}
+	
+	/**
+	 * Returns a copy of the values.
+	 */
+	public float[] toArray() {
+		if (values != null) return values.clone();
+		float[] array = new float[size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = get(i);
+		}
+		return array;
 	}
 	
 	/**
@@ -39,7 +78,7 @@ public class AnalyzationData implements Iterable<Float> {
 	}
 	
 	public float getClamped(int index) {
-		return clamp(values[index]);
+		return clamp(get(index));
 	}
 	
 	public float get(int index) {
@@ -65,12 +104,12 @@ public class AnalyzationData implements Iterable<Float> {
 			
 			@Override
 			public boolean hasNext() {
-				return index < values.length;
+				return index < size();
 			}
 			
 			@Override
 			public Float next() {
-				return values[index++];
+				return get(index++);
 			}
 		};
 	}
@@ -10,14 +10,19 @@ public class AnalyzedAudio extends DecodedAudio {
 	private final int iterationCount;
 	private final List<AnalyzedChannel> channels;
 	private final AnalyzedChannel mix;
+	private BeatGrid beatGrid;
 	
-	AnalyzedAudio(DecodedAudio audio, double duration, List<AnalyzedChannel> channels, AnalyzedChannel mix) {
+	/**
+	 * Creates analyzed audio. A beat grid passed as <code>null</code> is estimated on first access.
+	 */
+	AnalyzedAudio(DecodedAudio audio, double duration, List<AnalyzedChannel> channels, AnalyzedChannel mix, BeatGrid beatGrid) {
 		super(audio);
 		this.duration = duration;
 		this.channels = Collections.unmodifiableList(channels);
 		this.mix = mix;
-		bandCount = mix.getSpectra().get(0).length;
-		iterationCount = mix.getSpectra().size();
+		this.beatGrid = beatGrid;
+		bandCount = mix.getSpectrogram().getBandCount();
+		iterationCount = mix.getSpectrogram().getFrameCount();
 	}
 	
 	/**
@@ -73,6 +78,14 @@ public class AnalyzedAudio extends DecodedAudio {
 		return mix;
 	}
 	
+	/**
+	 * Returns tempo and beats, estimated from the onset detection function of the channel mix.
+	 */
+	public synchronized BeatGrid getBeatGrid() {
+		if (beatGrid == null) beatGrid = BeatGrid.estimate(mix.getOnsets(), getIterationRate());
+		return beatGrid;
+	}
+	
 	@Override
 	public String toString() {
 		return "Analyzed " + getResource().getName();
@@ -1,95 +1,203 @@
 package audiodrive.audio;
 
+import java.nio.FloatBuffer;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import audiodrive.utilities.Arithmetic;
 
 public class AnalyzedChannel extends DecodedChannel {
 	
-	private final List<float[]> spectra;
-	private final List<AnalyzationData> bands;
-	private final AnalyzationData spectralSum;
-	private final AnalyzationData spectralFlux;
-	private final AnalyzationData threshold;
-	private final AnalyzationData prunnedSpectralFlux;
-	private final AnalyzationData peaks;
+	private final Spectrogram spectrogram;
+	private final Spectrogram aggregatedBands;
+	private final OnsetDetector detector;
+	private AnalyzationData spectralSum;
+	private AnalyzationData spectralFlux;
+	private AnalyzationData onsets;
+	private AnalyzationData threshold;
+	private AnalyzationData prunnedSpectralFlux;
+	private AnalyzationData peaks;
+	private ChannelAnalyzer.Thresholding thresholding;
 	private final float maximum;
 	
+	/**
+	 * Creates an analyzed channel. Features passed as <code>null</code> are calculated on first access, the onset detection function using the given detector and threshold
+	 * and peaks using the given thresholding.
+	 */
 	AnalyzedChannel(Channel channel,
-					List<float[]> spectra,
-					List<AnalyzationData> bands,
+					Spectrogram spectrogram,
+					Spectrogram aggregatedBands,
+					OnsetDetector detector,
 					AnalyzationData spectralSum,
 					AnalyzationData spectralFlux,
+					AnalyzationData onsets,
 					AnalyzationData threshold,
-					AnalyzationData prunnedSpectralFlux,
-					AnalyzationData peaks) {
+					AnalyzationData peaks,
+					ChannelAnalyzer.Thresholding thresholding) {
 		super(channel);
-		this.spectra = spectra;
-		this.bands = bands;
+		this.spectrogram = spectrogram;
+		this.aggregatedBands = aggregatedBands;
+		this.detector = detector;
 		this.spectralSum = spectralSum;
 		this.spectralFlux = spectralFlux;
+		this.onsets = onsets;
 		this.threshold = threshold;
-		this.prunnedSpectralFlux = prunnedSpectralFlux;
 		this.peaks = peaks;
-		maximum = (float) bands.stream().mapToDouble(AnalyzationData::maximum).max().getAsDouble();
+		this.thresholding = thresholding;
+		maximum = (float) spectrogram.columns().stream().mapToDouble(AnalyzationData::maximum).max().getAsDouble();
 	}
 	
 	/**
-	 * Returns a list containing the spectrum for each iteration of samples.
+	 * Returns the spectra of all iterations of samples.
 	 */
-	public List<float[]> getSpectra() {
-		return spectra;
+	public Spectrogram getSpectrogram() {
+		return spectrogram;
 	}
 	
 	/**
-	 * Returns a list containing the separate frequency bands.
+	 * Returns a list containing views of the separate frequency bands.
 	 */
 	public List<AnalyzationData> getBands() {
-		return bands;
+		return spectrogram.columns();
+	}
+	
+	/**
+	 * Returns the bands aggregated into fewer linearly, logarithmically or mel spaced bands, as configured for the analyzation.
+	 */
+	public Spectrogram getAggregatedBands() {
+		return aggregatedBands;
 	}
 	
 	/**
-	 * Returns the spectrum for a given iteration index.
+	 * Returns a read-only view of the spectrum for a given iteration index.
 	 */
-	public float[] getSpectrum(int index) {
-		return spectra.get(index);
+	public FloatBuffer getSpectrum(int index) {
+		return spectrogram.row(index);
 	}
 	
 	/**
-	 * Returns a list containing the spectral sum for each iteration of samples.
+	 * Returns a list containing the spectral sum for each iteration of samples. It's calculated from the spectrogram on first access, which then has full precision, since
+	 * the analyzation calculates it before compacting the spectrogram.
 	 */
-	public AnalyzationData getSpectralSum() {
+	public synchronized AnalyzationData getSpectralSum() {
+		if (spectralSum == null) spectralSum = spectralSum(spectrogram);
 		return spectralSum;
 	}
 	
 	/**
-	 * Returns a list containing the spectral flux for each iteration of samples.
+	 * Returns a list containing the spectral flux for each iteration of samples. It's calculated from the spectrogram on first access, which then has full precision, since
+	 * the analyzation calculates it before compacting the spectrogram.
 	 */
-	public AnalyzationData getSpectralFlux() {
+	public synchronized AnalyzationData getSpectralFlux() {
+		if (spectralFlux == null) spectralFlux = spectralFlux(spectrogram);
 		return spectralFlux;
 	}
 	
 	/**
-	 * Returns a list containing the prunned spectral flux for each iteration of samples.
+	 * Calculates the sum of the bands of each iteration of the spectrogram.
+	 */
+	static AnalyzationData spectralSum(Spectrogram spectrogram) {
+		float[] values = new float[spectrogram.getFrameCount()];
+		for (int frame = 0; frame < values.length; frame++) {
+			float sum = 0;
+			for (int band = 0; band < spectrogram.getBandCount(); band++) {
+				sum += spectrogram.get(frame, band);
+			}
+			values[frame] = sum;
+		}
+		return new AnalyzationData(values);
+	}
+	
+	/**
+	 * Calculates the sum of the positive band differences of each iteration of the spectrogram to the previous one.
+	 */
+	static AnalyzationData spectralFlux(Spectrogram spectrogram) {
+		float[] values = new float[spectrogram.getFrameCount()];
+		for (int frame = 1; frame < values.length; frame++) {
+			float flux = 0;
+			for (int band = 0; band < spectrogram.getBandCount(); band++) {
+				float value = spectrogram.get(frame, band) - spectrogram.get(frame - 1, band);
+				flux += value < 0 ? 0 : value;
+			}
+			values[frame] = flux;
+		}
+		return new AnalyzationData(values);
+	}
+	
+	/**
+	 * Returns the detector which calculated the onset detection function.
+	 */
+	public OnsetDetector getOnsetDetector() {
+		return detector;
+	}
+	
+	/**
+	 * Returns a list containing the onset detection function for each iteration of samples, from which threshold and peaks are calculated. It is the spectral flux unless
+	 * another detector is configured. Other detectors calculate it on first access from the spectrogram, which may have been compacted to a lower precision.
+	 */
+	public synchronized AnalyzationData getOnsets() {
+		if (detector == OnsetDetector.SpectralFlux) return getSpectralFlux();
+		if (onsets == null) onsets = new AnalyzationData(detector.calculate(this));
+		return onsets;
+	}
+	
+	/**
+	 * Returns a list containing the prunned onset detection function for each iteration of samples. It is derived from onset detection function and threshold on first
+	 * request.
 	 */
-	public AnalyzationData getPrunnedSpectralFlux() {
+	public synchronized AnalyzationData getPrunnedSpectralFlux() {
+		if (prunnedSpectralFlux == null) {
+			AnalyzationData onsets = getOnsets();
+			AnalyzationData threshold = getThreshold();
+			float[] values = new float[onsets.size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = ChannelAnalyzer.prune(onsets.get(i), threshold.get(i));
+			}
+			prunnedSpectralFlux = new AnalyzationData(values);
+		}
 		return prunnedSpectralFlux;
 	}
 	
 	/**
 	 * Returns a list containing the threshold for each iteration of samples.
 	 */
-	public AnalyzationData getThreshold() {
+	public synchronized AnalyzationData getThreshold() {
+		if (threshold == null) calculateThreshold();
 		return threshold;
 	}
 	
 	/**
 	 * Returns a list containing the peak for each iteration of samples. A peak value of 0 indicates that there was no peak.
 	 */
-	public AnalyzationData getPeaks() {
+	public synchronized AnalyzationData getPeaks() {
+		if (peaks == null) calculateThreshold();
 		return peaks;
 	}
 	
+	private void calculateThreshold() {
+		thresholding.finish(getOnsets().toArray(), spectrogram.getFrameCount());
+		threshold = thresholding.threshold();
+		peaks = thresholding.peaks();
+		thresholding = null;
+	}
+	
+	/**
+	 * Returns the given feature if it has been calculated already, or <code>null</code> otherwise.
+	 */
+	synchronized AnalyzationData computed(Feature feature) {
+		switch (feature) {
+		case SpectralSum:
+			return spectralSum;
+		case SpectralFlux:
+			return spectralFlux;
+		case Threshold:
+			return threshold;
+		default:
+			return peaks;
+		}
+	}
+	
 	/**
 	 * Returns the minimum amplitude of this channel.
 	 */
@@ -111,4 +219,18 @@ public class AnalyzedChannel extends DecodedChannel {
 		return (float) Arithmetic.clamp(amplitude / getMaximum());
 	}
 	
+	/**
+	 * Features calculated per iteration. Spectrogram and bands are always calculated, since all features are derived from them.
+	 */
+	public static enum Feature {
+		SpectralSum, SpectralFlux, Threshold, Peaks;
+		
+		/**
+		 * Returns a set containing all features.
+		 */
+		public static Set<Feature> all() {
+			return EnumSet.allOf(Feature.class);
+		}
+	}
+	
 }
\ No newline at end of file
@@ -55,7 +55,17 @@ public interface Audio {
 	int getIteration();
 	
 	/**
-	 * Indicates the number of iterations per second.
+	 * Specifies the number of samples between the beginnings of successive iterations. A hop smaller than the iteration lets iterations overlap.
+	 */
+	Audio setHop(int samples);
+	
+	/**
+	 * Indicates the number of samples between the beginnings of successive iterations.
+	 */
+	int getHop();
+	
+	/**
+	 * Indicates the number of iterations per second, i.e. the sample rate divided by the hop.
 	 */
 	double getIterationRate();
 	
@@ -1,19 +1,34 @@
 package audiodrive.audio;
 
+import java.io.File;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
 
 import audiodrive.AudioDrive;
-import audiodrive.audio.analysis.FastFourierTransformation;
+import audiodrive.audio.analysis.WindowFunction;
 import audiodrive.utilities.Arithmetic;
 import audiodrive.utilities.Log;
 import audiodrive.utilities.Stopwatch;
 
 public class AudioAnalyzer {
 	
+	/** Number of decoded samples per channel after which a block is passed to analyzation. */
+	private static final int BlockSize = 64 * 1024;
+	/** Maximum number of decoded blocks waiting for analyzation. */
+	private static final int QueueCapacity = 8;
+	/** Maximum fraction by which successive iterations may overlap, which is a hop of an eighth of the iteration. */
+	private static final double MaximumOverlap = 0.875;
+	
 	private AtomicBoolean done = new AtomicBoolean();
 	private Stopwatch stopwatch = new Stopwatch();
 	
@@ -23,10 +38,37 @@ public class AudioAnalyzer {
 	
 	private int thresholdWindowSize;
 	private float thresholdMultiplier;
+	private ThresholdMethod thresholdMethod;
+	private boolean realTransformation = true;
+	private WindowFunction windowFunction;
+	private float overlap;
+	private AnalysisCache cache;
+	private volatile boolean evicting = true;
+	private long heapLimit;
+	private Spectrogram.Precision precision;
+	private OnsetDetector onsetDetector;
+	private Set<AnalyzedChannel.Feature> features = AnalyzedChannel.Feature.all();
+	private BandAggregation.Scale bandScale;
+	private int aggregatedBandCount;
+	private volatile double progress;
+	private Runnable throttle;
 	
 	public AudioAnalyzer() {
 		thresholdWindowSize = Arithmetic.clamp(AudioDrive.Settings.getInteger("audio.analyzation.window"), 5, 1000);
 		thresholdMultiplier = (float) Arithmetic.clamp(AudioDrive.Settings.getDouble("audio.analyzation.threshold"), 0.5, 5.0);
+		thresholdMethod = ThresholdMethod.forName(AudioDrive.Settings.get("audio.analyzation.threshold.method"));
+		overlap = (float) Arithmetic.clamp(AudioDrive.Settings.getDouble("audio.analyzation.overlap"), 0.0, MaximumOverlap);
+		setCache(AudioDrive.Settings.getInteger("audio.analyzation.cache.size") > 0);
+		bandScale = BandAggregation.Scale.forName(AudioDrive.Settings.get("audio.analyzation.bands.scale"));
+		aggregatedBandCount = Arithmetic.clamp(AudioDrive.Settings.getInteger("audio.analyzation.bands"), 1, 512);
+		precision = Spectrogram.Precision.forName(AudioDrive.Settings.get("audio.analyzation.precision"));
+		onsetDetector = OnsetDetector.forName(AudioDrive.Settings.get("audio.analyzation.onsets"));
+		setHeapLimit(Math.max(0, AudioDrive.Settings.getInteger("audio.analyzation.memory")) * 1024L * 1024L);
+		windowFunction = WindowFunction.forName(AudioDrive.Settings.get("audio.analyzation.windowfunction"));
+		if (windowFunction == null) {
+			Log.warning("Unknown window function \"%s\", using %s instead.", AudioDrive.Settings.get("audio.analyzation.windowfunction"), WindowFunction.Hamming);
+			windowFunction = WindowFunction.Hamming;
+		}
 	}
 	
 	/**
@@ -53,42 +95,246 @@ public class AudioAnalyzer {
 		return thresholdMultiplier;
 	}
 	
+	/**
+	 * Sets the method used to calculate the threshold from the spectral flux within the threshold window. (default: Mean)
+	 */
+	public AudioAnalyzer setThresholdMethod(ThresholdMethod thresholdMethod) {
+		this.thresholdMethod = thresholdMethod;
+		return this;
+	}
+	
+	public ThresholdMethod getThresholdMethod() {
+		return thresholdMethod;
+	}
+	
+	/**
+	 * Sets whether the spectra are calculated with the real valued FFT instead of the complex one. Both produce the same spectra. (default: true)
+	 */
+	public AudioAnalyzer setRealTransformation(boolean realTransformation) {
+		this.realTransformation = realTransformation;
+		return this;
+	}
+	
+	public boolean isRealTransformation() {
+		return realTransformation;
+	}
+	
+	/**
+	 * Sets the window function applied to the samples of each iteration. Windows with lower leakage blur the frequency resolution. (default: Hamming)
+	 */
+	public AudioAnalyzer setWindowFunction(WindowFunction windowFunction) {
+		this.windowFunction = windowFunction;
+		return this;
+	}
+	
+	public WindowFunction getWindowFunction() {
+		return windowFunction;
+	}
+	
+	/**
+	 * Sets the fraction by which successive iterations overlap, e.g. 0.5 or 0.75, clamped to [0, 0.875]. Overlapping iterations increase the temporal resolution of all
+	 * results. (default: 0)
+	 */
+	public AudioAnalyzer setOverlap(double overlap) {
+		this.overlap = (float) Arithmetic.clamp(overlap, 0.0, MaximumOverlap);
+		return this;
+	}
+	
+	public float getOverlap() {
+		return overlap;
+	}
+	
+	/**
+	 * Sets a callback which is run before each decoded block is analyzed, and may block to pause the analyzation.
+	 */
+	public AudioAnalyzer setThrottle(Runnable throttle) {
+		this.throttle = throttle;
+		return this;
+	}
+	
+	/**
+	 * Enables or disables the on-disk cache of analyzation results. (default: enabled if the cache size setting is greater than zero)
+	 */
+	public AudioAnalyzer setCache(boolean enabled) {
+		if (!enabled) cache = null;
+		else if (cache == null) {
+			File directory = new File(AudioDrive.Settings.get("audio.analyzation.cache.directory"));
+			long megabytes = Math.max(1, AudioDrive.Settings.getInteger("audio.analyzation.cache.size"));
+			cache = new AnalysisCache(directory, megabytes * 1024 * 1024);
+		}
+		return this;
+	}
+	
+	/**
+	 * Sets whether storing the results in the cache may evict the least recently used entries. Otherwise the results are only stored if they fit into the cache. Results
+	 * loaded or stored by an evicting analyzer are pinned, so that they aren't evicted in favor of others. (default: true)
+	 */
+	public AudioAnalyzer setEvicting(boolean evicting) {
+		this.evicting = evicting;
+		return this;
+	}
+	
+	/**
+	 * Sets the number of bytes samples and spectra may occupy on the heap. If they are expected to exceed it, they are spilled to memory-mapped temporary files, which allows
+	 * analyzing audio of any duration. (default: 512 MB)
+	 */
+	public AudioAnalyzer setHeapLimit(long bytes) {
+		heapLimit = bytes;
+		return this;
+	}
+	
+	public long getHeapLimit() {
+		return heapLimit;
+	}
+	
+	/**
+	 * Sets the precision the spectra are stored with once the analyzation is complete. Compact precisions reduce the memory footprint of the results two or four times.
+	 * (default: Float)
+	 */
+	public AudioAnalyzer setPrecision(Spectrogram.Precision precision) {
+		this.precision = precision;
+		return this;
+	}
+	
+	public Spectrogram.Precision getPrecision() {
+		return precision;
+	}
+	
+	/**
+	 * Sets the detector calculating the onset detection function, whose peaks exceeding the threshold are the detected onsets. (default: Spectral Flux)
+	 */
+	public AudioAnalyzer setOnsetDetector(OnsetDetector onsetDetector) {
+		this.onsetDetector = onsetDetector;
+		return this;
+	}
+	
+	public OnsetDetector getOnsetDetector() {
+		return onsetDetector;
+	}
+	
+	/**
+	 * Sets the features which are calculated during analyzation. The remaining features are calculated on first access, which is worthwhile if they might not be needed at
+	 * all. (default: all)
+	 */
+	public AudioAnalyzer setFeatures(Set<AnalyzedChannel.Feature> features) {
+		this.features = EnumSet.noneOf(AnalyzedChannel.Feature.class);
+		this.features.addAll(features);
+		return this;
+	}
+	
+	public Set<AnalyzedChannel.Feature> getFeatures() {
+		return features;
+	}
+	
+	/**
+	 * Sets the spacing and number of the aggregated bands, which are calculated from the spectra of each iteration. (default: 32 logarithmically spaced bands)
+	 */
+	public AudioAnalyzer setBandAggregation(BandAggregation.Scale scale, int count) {
+		bandScale = scale;
+		aggregatedBandCount = count;
+		return this;
+	}
+	
+	/**
+	 * Creates the band aggregation for spectra with the given number of bands.
+	 */
+	BandAggregation createBandAggregation(int bandCount, float sampleRate) {
+		return new BandAggregation(bandScale, aggregatedBandCount, bandCount, sampleRate);
+	}
+	
+	/**
+	 * Returns the number of samples between successive iterations of the given size.
+	 */
+	private int hop(int iteration) {
+		return Arithmetic.clamp(Math.round(iteration * (1 - overlap)), 1, iteration);
+	}
+	
 	public boolean isDone() {
 		return done.get();
 	}
 	
+	/**
+	 * Indicates the progress of the current analyzation in the range [0, 1].
+	 */
+	public double getProgress() {
+		return progress;
+	}
+	
 	public AudioAnalyzer analyze(AudioResource file) {
 		if (file.equals(this.file)) return null;
 		Log.info("Analyzing audio...");
 		Log.debug("Analyzing \"%s\"...", file.getName());
 		this.file = file;
 		done.set(false);
+		progress = 0;
 		stopwatch.start();
+		String key = null;
+		if (cache != null) {
+			try {
+				key = key(file);
+				AnalyzedAudio cached = cache.load(key, file, this);
+				if (cached != null) {
+					if (evicting) AnalysisCache.pin(key);
+					samples = cached;
+					results = cached;
+					progress = 1;
+					Log.debug("Loaded cached analyzation results in %.3f seconds", stopwatch.stop());
+					Log.info("Analyzation complete");
+					done.set(true);
+					return this;
+				}
+			} catch (Exception exception) {
+				Log.debug("Couldn't access analyzation cache.", exception);
+			}
+		}
+		Decoding decoding = new Decoding(file, heapLimit);
+		decoding.start();
+		List<ChannelAnalyzer> analyzers = null;
 		try {
-			samples = AudioDecoder.decode(file);
+			while (true) {
+				AudioDecoder.Block block = decoding.blocks.take();
+				if (block == Decoding.End) break;
+				if (throttle != null) throttle.run();
+				if (analyzers == null) analyzers = createAnalyzers(block);
+				analyzers.parallelStream().forEach(analyzer -> analyzer.analyze(block));
+				progress = (double) block.sampleCount / block.expectedSampleCount;
+			}
+			decoding.join();
 		} catch (OutOfMemoryError error) {
-			Log.debug("Not enough memory available to decode file \"%s\".", error, file.getName());
+			decoding.interrupt();
+			Log.debug("Not enough memory available to analyze file \"%s\".", error, file.getName());
 			done.set(true);
 			return this;
-		} catch (Exception exception) {
+		} catch (InterruptedException exception) {
+			decoding.interrupt();
+			Thread.currentThread().interrupt();
 			done.set(true);
 			return this;
 		}
-		Log.trace("Decoding took %.3f seconds", stopwatch.getSeconds());
-		double duration = samples.getSampleCount() / samples.getSampleRate();
-		ArrayList<Channel> channels = new ArrayList<>(samples.getChannels());
-		channels.add(samples.getMix());
-		List<AnalyzedChannel> analyzedChannels;
-		try {
-			analyzedChannels = channels.stream().parallel().map(this::analyze).collect(Collectors.toList());
-		} catch (OutOfMemoryError error) {
-			Log.debug("Not enough memory available to analyze file \"%s\".", error, file.getName());
+		if (decoding.error != null) {
+			if (decoding.error instanceof OutOfMemoryError) Log.debug("Not enough memory available to decode file \"%s\".", decoding.error, file.getName());
+			else Log.debug("Couldn't decode file \"%s\".", decoding.error, file.getName());
+			done.set(true);
+			return this;
+		}
+		samples = decoding.audio;
+		samples.setHop(hop(samples.getIteration()));
+		Log.trace("Decoding took %.3f seconds", decoding.seconds);
+		if (analyzers == null || analyzers.get(0).getIterationCount() == 0) {
+			Log.debug("File \"%s\" doesn't contain enough samples to be analyzed.", file.getName());
 			done.set(true);
 			return this;
 		}
-		AnalyzedChannel analyzedMix = analyzedChannels.remove(analyzedChannels.size() - 1);
-		results = new AnalyzedAudio(samples, duration, analyzedChannels, analyzedMix);
+		double duration = samples.getSampleCount() / samples.getSampleRate();
+		List<AnalyzedChannel> analyzedChannels = new ArrayList<>();
+		for (int channel = 0; channel < samples.getChannelCount(); channel++) {
+			analyzedChannels.add(analyzers.get(channel).finish(samples.getChannel(channel)));
+		}
+		AnalyzedChannel analyzedMix = analyzers.get(analyzers.size() - 1).finish(samples.getMix());
+		results = new AnalyzedAudio(samples, duration, analyzedChannels, analyzedMix, null);
+		progress = 1;
 		Log.debug("Analyzation took %.3f seconds total", stopwatch.stop());
+		if (key != null) store(key, results);
 		int minutes = (int) (results.getDuration() / 60);
 		int seconds = (int) Math.round(results.getDuration() - minutes * 60);
 		Log.debug(
@@ -100,6 +346,7 @@ public class AudioAnalyzer {
 				+ "%n%s spectra"
 				+ "%n%s bands"
 				+ "%n%s samples per iteration"
+				+ "%n%s samples per hop"
 				+ "%n%.3f iterations per second",
 			minutes,
 			seconds,
@@ -109,117 +356,191 @@ public class AudioAnalyzer {
 			results.getIterationCount(),
 			results.getBandCount(),
 			results.getIteration(),
+			results.getHop(),
 			results.getIterationRate());
 		Log.info("Analyzation complete");
 		done.set(true);
 		return this;
 	}
 	
-	private AnalyzedChannel analyze(Channel channel) {
-		Stopwatch stopwatch = new Stopwatch().start();
-		List<float[]> spectra = calculateSpectra(channel);
-		Log.trace("Spectra calculation of %s took %.3f seconds", channel, stopwatch.getSeconds());
-		List<AnalyzationData> bands = calculateBands(spectra);
-		Log.trace("Band calculation of %s took %.3f seconds", channel, stopwatch.getSeconds());
-		AnalyzationData spectralSum = calculateSpectralSum(spectra, channel);
-		Log.trace("SpectralSum calculation of %s took %.3f seconds", channel, stopwatch.getSeconds());
-		AnalyzationData spectralFlux = calculateSpectralFlux(spectra, channel);
-		Log.trace("SpectralFlux calculation of %s took %.3f seconds", channel, stopwatch.getSeconds());
-		AnalyzationData threshold = calculateThreshold(spectralFlux);
-		Log.trace("Threshold calculation of %s took %.3f seconds", channel, stopwatch.getSeconds());
-		AnalyzationData prunnedSpectralFlux = calculatePrunnedSpectralFlux(spectralFlux, threshold);
-		Log.trace("PrunnedSpectralFlux of %s calculation took %.3f seconds", channel, stopwatch.getSeconds());
-		AnalyzationData peaks = calculatePeaks(prunnedSpectralFlux);
-		Log.trace("Peaks calculation of %s took %.3f seconds", channel, stopwatch.getSeconds());
-		return new AnalyzedChannel(channel, spectra, bands, spectralSum, spectralFlux, threshold, prunnedSpectralFlux, peaks);
-	}
-	
-	private List<float[]> calculateSpectra(Channel channel) {
-		return channel.stream().parallel().map(samples -> {
-			FastFourierTransformation fft = new FastFourierTransformation(channel.getIteration(), channel.getSampleRate());
-			fft.window(FastFourierTransformation.HAMMING);
-			fft.forward(samples);
-			return fft.getSpectrum();
-		}).collect(Collectors.toList());
-	}
-	
-	private List<AnalyzationData> calculateBands(List<float[]> spectra) {
-		int numberOfSpectra = spectra.size();
-		int numberOfBands = spectra.get(0).length;
-		IntStream bands = IntStream.range(0, numberOfBands);
-		return bands.parallel().mapToObj(b -> {
-			float[] band = new float[numberOfSpectra];
-			for (int s = 0; s < numberOfSpectra; s++) {
-				band[s] = spectra.get(s)[b];
-			}
-			return band;
-		}).map(AnalyzationData::new).collect(Collectors.toList());
+	private String key(AudioResource file) {
+		return cache.key(file, thresholdWindowSize, thresholdMultiplier, thresholdMethod, overlap, windowFunction.getKey(), realTransformation, precision, onsetDetector);
 	}
 	
-	private AnalyzationData calculateSpectralSum(List<float[]> spectra, Channel channel) {
-		float[] values = new float[spectra.size()];
-		int index = 0;
-		for (float[] spectrum : spectra) {
-			float sum = 0;
-			for (int i = 0; i < spectrum.length; i++) {
-				sum += spectrum[i];
-			}
-			values[index++] = sum;
+	/**
+	 * Indicates that the cache contains analyzation results of the file for the current parameters, without loading them.
+	 */
+	public boolean isCached(AudioResource file) {
+		if (cache == null) return false;
+		try {
+			return cache.contains(key(file));
+		} catch (Exception exception) {
+			Log.debug("Couldn't access analyzation cache.", exception);
+			return false;
 		}
-		return new AnalyzationData(values);
-	}
-	
-	private AnalyzationData calculateSpectralFlux(List<float[]> spectra, Channel channel) {
-		float[] values = new float[spectra.size()];
-		int index = 0;
-		float[] lastSpectrum = null;
-		for (float[] spectrum : spectra) {
-			float flux = 0;
-			if (lastSpectrum != null) {
-				for (int i = 0; i < spectrum.length; i++) {
-					float value = (spectrum[i] - lastSpectrum[i]);
-					flux += value < 0 ? 0 : value;
-				}
-			}
-			values[index++] = flux;
-			lastSpectrum = spectrum;
+	}
+	
+	/**
+	 * Estimates the number of bytes of the cache entry of the file from its format and duration, without decoding it. Returns zero if the format isn't supported.
+	 */
+	long estimateCacheSize(AudioResource file) {
+		try {
+			AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(file.getUrl());
+			AudioFormat format = fileFormat.getFormat();
+			float sampleRate = format.getSampleRate();
+			if (sampleRate <= 0) return 0;
+			// the frames of compressed formats differ from samples, so the duration is calculated from the frame rate
+			double duration;
+			if (fileFormat.getFrameLength() != AudioSystem.NOT_SPECIFIED && format.getFrameRate() > 0) duration = fileFormat.getFrameLength() / format.getFrameRate();
+			else duration = file.getDuration();
+			long samples = (long) (duration * sampleRate);
+			int iteration = DecodedAudio.defaultIteration(sampleRate);
+			return AnalysisCache.size(format.getChannels() > 0 ? format.getChannels() : 2, samples, samples / hop(iteration), iteration / 2 + 1, precision);
+		} catch (Exception exception) {
+			return 0;
 		}
-		return new AnalyzationData(values);
-	}
-	
-	private AnalyzationData calculateThreshold(AnalyzationData spectralFlux) {
-		float[] values = new float[spectralFlux.size()];
-		int index = 0;
-		for (int i = 0; i < spectralFlux.size(); i++) {
-			int start = Math.max(0, i - thresholdWindowSize);
-			int end = Math.min(spectralFlux.size() - 1, i + thresholdWindowSize);
-			float mean = 0;
-			for (int j = start; j <= end; j++)
-				mean += spectralFlux.get(j);
-			mean /= (end - start);
-			values[index++] = mean * thresholdMultiplier;
+	}
+	
+	/**
+	 * Returns the number of bytes of all cached results, or zero if the cache is disabled.
+	 */
+	long getCacheSize() {
+		return cache != null ? cache.size() : 0;
+	}
+	
+	/**
+	 * Returns the maximum number of bytes of all cached results, or zero if the cache is disabled.
+	 */
+	long getCacheLimit() {
+		return cache != null ? cache.limit() : 0;
+	}
+	
+	/**
+	 * Indicates that the on-disk cache is enabled.
+	 */
+	public boolean isCaching() {
+		return cache != null;
+	}
+	
+	/**
+	 * Writes the results to the cache in the background.
+	 */
+	private void store(String key, AnalyzedAudio results) {
+		AnalysisCache cache = this.cache;
+		boolean evicting = this.evicting;
+		if (evicting) AnalysisCache.pin(key);
+		Thread thread = new Thread(() -> {
+			Stopwatch stopwatch = new Stopwatch().start();
+			cache.store(key, results, precision, evicting);
+			Log.trace("Caching analyzation results took %.3f seconds", stopwatch.stop());
+		});
+		thread.setName("Analyzation Cache Thread");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Returns the threshold window size in iterations of the given size and hop, scaled so that it covers the same duration regardless of the overlap.
+	 */
+	private int thresholdWindowSize(int iteration, int hop) {
+		return Math.round(this.thresholdWindowSize * (float) iteration / hop);
+	}
+	
+	/**
+	 * Creates the calculation of threshold and peaks for cached results with iterations of the given size and hop, which calculate them on first access.
+	 */
+	ChannelAnalyzer.Thresholding createThresholding(int iteration, int hop) {
+		return new ChannelAnalyzer.Thresholding(thresholdWindowSize(iteration, hop), thresholdMultiplier, thresholdMethod, 0);
+	}
+	
+	/**
+	 * Creates an analyzer for each channel and one for the channel mix.
+	 */
+	private List<ChannelAnalyzer> createAnalyzers(AudioDecoder.Block block) {
+		int iteration = DecodedAudio.defaultIteration(block.sampleRate);
+		int hop = hop(iteration);
+		int expectedIterations = block.expectedSampleCount / hop;
+		int thresholdWindowSize = thresholdWindowSize(iteration, hop);
+		// the spectra get the part of the heap limit that isn't occupied by the samples
+		int count = block.channels.length + 1;
+		long sampleBytes = block.mix.hasArray() ? (long) block.expectedSampleCount * count * Float.BYTES : 0;
+		long spectraBytes = (long) expectedIterations * (iteration / 2 + 1) * count * Float.BYTES;
+		boolean mapped = sampleBytes + spectraBytes > heapLimit;
+		if (mapped) Log.debug("Spilling spectra to memory-mapped temporary files.");
+		List<ChannelAnalyzer> analyzers = new ArrayList<>(count);
+		for (int channel = 0; channel < block.channels.length; channel++) {
+			analyzers.add(new ChannelAnalyzer(this, channel, iteration, hop, block.sampleRate, thresholdWindowSize, expectedIterations, mapped));
 		}
-		return new AnalyzationData(values);
+		analyzers.add(new ChannelAnalyzer(this, -1, iteration, hop, block.sampleRate, thresholdWindowSize, expectedIterations, mapped));
+		return analyzers;
 	}
 	
-	private AnalyzationData calculatePrunnedSpectralFlux(AnalyzationData spectralFlux, AnalyzationData threshold) {
-		float[] values = new float[spectralFlux.size()];
-		int index = 0;
-		for (int i = 0; i < threshold.size(); i++) {
-			if (threshold.get(i) <= spectralFlux.get(i)) values[index++] = spectralFlux.get(i) - threshold.get(i);
-			else values[index++] = 0;
+	/**
+	 * Method to calculate the threshold of the spectral flux.
+	 */
+	public static enum ThresholdMethod {
+		/** Mean of the threshold window, calculated in constant time using prefix sums. */
+		Mean,
+		/** Median of the threshold window, less sensitive to single strong peaks. */
+		Median;
+		
+		/**
+		 * Returns the threshold method with the given name, ignoring case, or {@link #Mean} if there is none.
+		 */
+		public static ThresholdMethod forName(String name) {
+			for (ThresholdMethod method : values()) {
+				if (method.name().equalsIgnoreCase(name)) return method;
+			}
+			Log.warning("Unknown threshold method \"%s\", using %s instead.", name, Mean);
+			return Mean;
 		}
-		return new AnalyzationData(values);
 	}
 	
-	private AnalyzationData calculatePeaks(AnalyzationData prunnedSpectralFlux) {
-		float[] values = new float[prunnedSpectralFlux.size()];
-		int index = 0;
-		for (int i = 0; i < prunnedSpectralFlux.size() - 1; i++) {
-			if (prunnedSpectralFlux.get(i) > prunnedSpectralFlux.get(i + 1)) values[index++] = prunnedSpectralFlux.get(i);
-			else values[index++] = 0;
+	/**
+	 * Decodes the audio file on a separate thread and passes the decoded blocks through a bounded queue, so that analyzation overlaps with decoding.
+	 */
+	private static class Decoding extends Thread {
+		
+		private static final AudioDecoder.Block End = new AudioDecoder.Block(new FloatBuffer[0], FloatBuffer.allocate(0), 0, 0, 0);
+		
+		private final BlockingQueue<AudioDecoder.Block> blocks = new ArrayBlockingQueue<>(QueueCapacity);
+		private final AudioResource file;
+		private final long heapLimit;
+		private volatile DecodedAudio audio;
+		private volatile Throwable error;
+		private volatile double seconds;
+		
+		private Decoding(AudioResource file, long heapLimit) {
+			super("Decoding Thread");
+			this.file = file;
+			this.heapLimit = heapLimit;
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			Stopwatch stopwatch = new Stopwatch().start();
+			try {
+				audio = AudioDecoder.decode(file, BlockSize, block -> {
+					try {
+						blocks.put(block);
+					} catch (InterruptedException exception) {
+						interrupt();
+						throw new RuntimeException(exception);
+					}
+				}, heapLimit);
+			} catch (Throwable throwable) {
+				error = throwable;
+			} finally {
+				seconds = stopwatch.stop();
+				try {
+					blocks.put(End);
+				} catch (InterruptedException exception) {
+					// the analyzer stopped consuming blocks
+				}
+			}
 		}
-		return new AnalyzationData(values);
+		
 	}
 	
 	public Audio getSamples() {
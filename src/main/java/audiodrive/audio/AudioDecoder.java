@@ -1,18 +1,22 @@
 package audiodrive.audio;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
-import org.tritonus.share.sampled.FloatSampleBuffer;
+import audiodrive.utilities.Log;
 
 public class AudioDecoder {
 	
+	/** Number of frames which are read and converted at once. */
+	private static final int ChunkSize = 1024;
+	
 	/** Private constructor to prevent instantiation. */
 	private AudioDecoder() {
 		throw new IllegalStateException("This class shall not be instantiated.");
@@ -27,34 +31,161 @@ public class AudioDecoder {
 		}
 	}
 	
+	/**
+	 * Opens a decoded stream starting at the given time in seconds. MPEG files start decoding shortly before the frame containing the time, which is looked up in the
+	 * frame index, other files are decoded from the beginning. The remaining samples are skipped.
+	 */
+	public static AudioInputStream stream(AudioResource audio, double seconds) {
+		if (seconds <= 0) return stream(audio);
+		FrameIndex index = audio.getFrameIndex();
+		AudioInputStream stream;
+		long sample;
+		long skipped = 0;
+		try {
+			if (index != null) {
+				sample = (long) (seconds * index.getSampleRate());
+				int frame = Math.max(0, index.frame(sample) - FrameIndex.Preroll);
+				InputStream input = new BufferedInputStream(audio.getUrl().openStream());
+				skip(input, index.offset(frame));
+				AudioInputStream encoded = AudioSystem.getAudioInputStream(input);
+				stream = AudioSystem.getAudioInputStream(getDecodingFormat(encoded.getFormat()), encoded);
+				skipped = index.sample(frame);
+			} else {
+				stream = stream(audio);
+				sample = (long) (seconds * stream.getFormat().getSampleRate());
+			}
+			long bytes = (sample - skipped) * stream.getFormat().getFrameSize();
+			if (skip(stream, bytes) < bytes) Log.debug("seeked beyond the end of %s", audio);
+			return stream;
+		} catch (UnsupportedAudioFileException | IOException exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+	
+	/**
+	 * Skips the given number of bytes, reading them if the stream can't skip.
+	 */
+	private static long skip(InputStream input, long bytes) throws IOException {
+		long skipped = 0;
+		byte[] buffer = null;
+		while (skipped < bytes) {
+			long n = input.skip(bytes - skipped);
+			if (n <= 0) {
+				if (buffer == null) buffer = new byte[ChunkSize * 4];
+				n = input.read(buffer, 0, (int) Math.min(buffer.length, bytes - skipped));
+				if (n == -1) break;
+			}
+			skipped += n;
+		}
+		return skipped;
+	}
+	
+	/**
+	 * Decodes the audio resource into primitive sample buffers. The samples are converted and mixed chunk by chunk while streaming, so no intermediate copies of the whole
+	 * file are kept. The buffers are sized from the stream's frame length if available, otherwise they grow geometrically.
+	 */
 	public static DecodedAudio decode(AudioResource audio) {
+		return decode(audio, 0, null);
+	}
+	
+	/**
+	 * Decodes the audio resource like {@linkplain #decode(AudioResource, int, BlockListener, long)} without limiting the memory used for the samples.
+	 */
+	public static DecodedAudio decode(AudioResource audio, int blockSize, BlockListener listener) {
+		return decode(audio, blockSize, listener, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Decodes the audio resource like {@linkplain #decode(AudioResource)} and additionally notifies the listener each time at least <code>blockSize</code> further samples per
+	 * channel have been decoded, as well as once after the last samples have been decoded. If the samples are expected to exceed <code>heapLimit</code> bytes, they are
+	 * spilled to memory-mapped temporary files instead of being kept on the heap.
+	 */
+	public static DecodedAudio decode(AudioResource audio, int blockSize, BlockListener listener, long heapLimit) {
 		AudioInputStream stream = stream(audio);
 		AudioFormat format = stream.getFormat();
-		List<byte[]> list = new LinkedList<>();
-		int bufferSize = 1024 * format.getFrameSize();
-		int byteCount = 0;
+		int channelCount = format.getChannels();
+		int frameSize = format.getFrameSize();
+		int expectedSampleCount = estimateSampleCount(audio, stream);
+		boolean mapped = (long) expectedSampleCount * (channelCount + 1) * Float.BYTES > heapLimit;
+		if (mapped) Log.debug("Spilling decoded samples to memory-mapped temporary files.");
+		FloatStorage[] channels = new FloatStorage[channelCount];
+		for (int channel = 0; channel < channelCount; channel++) {
+			channels[channel] = FloatStorage.create(expectedSampleCount, mapped);
+		}
+		FloatStorage mix = FloatStorage.create(expectedSampleCount, mapped);
+		byte[] bytes = new byte[ChunkSize * frameSize];
+		float[][] converted = new float[channelCount + 1][ChunkSize];
+		int sampleCount = 0;
+		int published = 0;
 		try {
 			while (true) {
-				byte[] bytes = new byte[bufferSize];
 				int n = stream.read(bytes, 0, bytes.length);
 				if (n == -1) break;
-				list.add(bytes);
-				byteCount += n;
+				int frames = n / frameSize;
+				convert(bytes, frames, channelCount, converted);
+				for (int channel = 0; channel < channelCount; channel++) {
+					channels[channel].ensureCapacity(sampleCount + frames);
+					channels[channel].put(sampleCount, converted[channel], 0, frames);
+				}
+				mix.ensureCapacity(sampleCount + frames);
+				mix.put(sampleCount, converted[channelCount], 0, frames);
+				sampleCount += frames;
+				if (listener != null && sampleCount - published >= blockSize) {
+					listener.decoded(new Block(buffers(channels), mix.buffer(), sampleCount, format.getSampleRate(), Math.max(sampleCount, expectedSampleCount)));
+					published = sampleCount;
+				}
 			}
 			stream.close();
 		} catch (IOException exception) {
 			exception.printStackTrace();
 		}
-		int totalSampleCount = byteCount / format.getFrameSize();
-		FloatSampleBuffer samples = new FloatSampleBuffer(format.getChannels(), totalSampleCount, format.getSampleRate());
-		int offset = 0;
-		for (byte[] bytes : list) {
-			int remaining = totalSampleCount - offset;
-			int sampleCount = Math.min(bytes.length / format.getFrameSize(), remaining);
-			samples.setSamplesFromBytes(bytes, 0, format, offset, sampleCount);
-			offset += sampleCount;
+		if (listener != null && sampleCount > published) listener.decoded(new Block(buffers(channels), mix.buffer(), sampleCount, format.getSampleRate(), sampleCount));
+		FloatBuffer[] samples = new FloatBuffer[channelCount];
+		for (int channel = 0; channel < channelCount; channel++) {
+			samples[channel] = channels[channel].slice(sampleCount);
+			channels[channel].close();
+		}
+		mix.close();
+		return new DecodedAudio(audio, samples, mix.slice(sampleCount), sampleCount, format.getSampleRate());
+	}
+	
+	private static FloatBuffer[] buffers(FloatStorage[] storages) {
+		FloatBuffer[] buffers = new FloatBuffer[storages.length];
+		for (int i = 0; i < storages.length; i++) {
+			buffers[i] = storages[i].buffer();
+		}
+		return buffers;
+	}
+	
+	/**
+	 * Returns the expected number of samples per channel, based on the stream's frame length or, if unknown, the resource's duration.
+	 */
+	private static int estimateSampleCount(AudioResource audio, AudioInputStream stream) {
+		long frames = stream.getFrameLength();
+		if (frames != AudioSystem.NOT_SPECIFIED) return (int) frames;
+		double duration = audio.getDuration();
+		float sampleRate = stream.getFormat().getSampleRate();
+		// add one second to the estimated duration to avoid growing due to rounding
+		if (duration > 0) return (int) ((duration + 1) * sampleRate);
+		return (int) (60 * sampleRate);
+	}
+	
+	/**
+	 * Converts interleaved 16 bit little endian frames to [-1, 1] float values, writing each channel followed by the mix of all channels.
+	 */
+	private static void convert(byte[] bytes, int frames, int channelCount, float[][] converted) {
+		float divisor = 32768f * channelCount;
+		int index = 0;
+		for (int frame = 0; frame < frames; frame++) {
+			float sum = 0;
+			for (int channel = 0; channel < channelCount; channel++) {
+				int value = (bytes[index] & 0xFF) | (bytes[index + 1] << 8);
+				index += 2;
+				converted[channel][frame] = value / 32768f;
+				sum += value;
+			}
+			converted[channelCount][frame] = sum / divisor;
 		}
-		return new DecodedAudio(audio, samples);
 	}
 	
 	public static AudioFormat getDecodingFormat(AudioFormat format) {
@@ -72,4 +203,48 @@ public class AudioDecoder {
 		return converted;
 	}
 	
+	/**
+	 * A snapshot of the samples decoded so far. The buffers may be larger than the number of decoded samples, but are valid up to {@linkplain #sampleCount}. They are meant
+	 * for absolute access, and are backed by an array unless the samples are spilled to memory-mapped files.
+	 */
+	public static class Block {
+		
+		/** The samples of each channel. */
+		public final FloatBuffer[] channels;
+		/** The mix of all channels. */
+		public final FloatBuffer mix;
+		/** The number of samples per channel decoded so far. */
+		public final int sampleCount;
+		/** The number of samples per second. */
+		public final float sampleRate;
+		/** The expected total number of samples per channel. */
+		public final int expectedSampleCount;
+		
+		Block(FloatBuffer[] channels, FloatBuffer mix, int sampleCount, float sampleRate, int expectedSampleCount) {
+			this.channels = channels;
+			this.mix = mix;
+			this.sampleCount = sampleCount;
+			this.sampleRate = sampleRate;
+			this.expectedSampleCount = expectedSampleCount;
+		}
+		
+		/**
+		 * Returns the samples of the channel with the specified index. A value of -1 indicates the channel mix.
+		 */
+		public FloatBuffer getSamples(int channel) {
+			return channel < 0 ? mix : channels[channel];
+		}
+		
+	}
+	
+	@FunctionalInterface
+	public interface BlockListener {
+		
+		/**
+		 * Called on the decoding thread each time a block of samples has been decoded.
+		 */
+		void decoded(Block block);
+		
+	}
+	
 }
@@ -17,6 +17,8 @@ public class AudioResource {
 	private String path;
 	private String name;
 	private double duration;
+	private FrameIndex frameIndex;
+	private boolean indexed;
 	
 	public AudioResource(URL url) {
 		this.url = url;
@@ -64,6 +66,24 @@ public class AudioResource {
 		return AudioDecoder.stream(this);
 	}
 	
+	/**
+	 * Opens an audio input stream on the file, starting at the given time in seconds.
+	 */
+	public AudioInputStream open(double seconds) {
+		return AudioDecoder.stream(this, seconds);
+	}
+	
+	/**
+	 * Returns the frame index of MPEG files, which is built on first use, or <code>null</code> for other files.
+	 */
+	synchronized FrameIndex getFrameIndex() {
+		if (!indexed) {
+			if (name.toLowerCase().endsWith(".mp3")) frameIndex = FrameIndex.scan(this);
+			indexed = true;
+		}
+		return frameIndex;
+	}
+	
 	public Playback play(double volume) {
 		if (volume == 1.0) return play();
 		return new Playback(this).setVolume(volume).start();
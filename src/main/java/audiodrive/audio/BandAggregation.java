@@ -0,0 +1,154 @@
+package audiodrive.audio;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import audiodrive.utilities.Log;
+
+/**
+ * Aggregates the frequency bands of a spectrum into fewer bands, which are spaced linearly, logarithmically or on the mel scale. Each aggregated band is the mean amplitude of
+ * the spectrum bands within its frequency range, and contains at least the spectrum band at its lower edge, so that narrow low bands aren't empty.
+ */
+public class BandAggregation {
+	
+	/** Lowest audible frequency in Hz, logarithmically spaced bands start at it or at the width of a spectrum band if that is larger. */
+	private static final double MinimumFrequency = 20;
+	
+	private final Scale scale;
+	private final int count;
+	private final float[] frequencies;
+	private final int[] from;
+	private final int[] to;
+	
+	/**
+	 * Creates an aggregation into the given number of bands, for spectra with the given number of bands of audio with the given sample rate.
+	 */
+	public BandAggregation(Scale scale, int count, int bandCount, float sampleRate) {
+		count = Math.max(1, Math.min(count, bandCount));
+		this.scale = scale;
+		this.count = count;
+		double nyquist = sampleRate / 2;
+		double bandWidth = nyquist / (bandCount - 1);
+		double minimum = Math.max(MinimumFrequency, bandWidth);
+		frequencies = new float[count + 1];
+		from = new int[count];
+		to = new int[count];
+		for (int band = 0; band <= count; band++) {
+			frequencies[band] = (float) scale.frequency((double) band / count, minimum, nyquist);
+		}
+		for (int band = 0; band < count; band++) {
+			from[band] = Math.min(bandCount - 1, (int) Math.round(frequencies[band] / bandWidth));
+			to[band] = Math.max(from[band] + 1, Math.min(bandCount, (int) Math.round(frequencies[band + 1] / bandWidth)));
+		}
+		// the last band includes the nyquist frequency
+		to[count - 1] = bandCount;
+	}
+	
+	/**
+	 * Writes the aggregated bands of the spectrum starting at the given offset of the source into the target, starting at the given target offset.
+	 */
+	public void aggregate(FloatBuffer source, int offset, float[] target, int targetOffset) {
+		for (int band = 0; band < count; band++) {
+			float sum = 0;
+			for (int i = from[band]; i < to[band]; i++) {
+				sum += source.get(offset + i);
+			}
+			target[targetOffset + band] = sum / (to[band] - from[band]);
+		}
+	}
+	
+	/**
+	 * Aggregates all spectra of the spectrogram.
+	 */
+	public Spectrogram aggregate(Spectrogram spectrogram) {
+		int frames = spectrogram.getFrameCount();
+		float[] values = new float[frames * count];
+		for (int frame = 0; frame < frames; frame++) {
+			aggregate(spectrogram.row(frame), 0, values, frame * count);
+		}
+		return spectrogram(values, frames);
+	}
+	
+	/**
+	 * Wraps the aggregated values of the given number of iterations into a spectrogram.
+	 */
+	Spectrogram spectrogram(float[] values, int frames) {
+		float[] minimums = new float[count];
+		float[] maximums = new float[count];
+		Arrays.fill(minimums, Float.POSITIVE_INFINITY);
+		Arrays.fill(maximums, Float.NEGATIVE_INFINITY);
+		for (int frame = 0; frame < frames; frame++) {
+			for (int band = 0; band < count; band++) {
+				float value = values[frame * count + band];
+				if (value < minimums[band]) minimums[band] = value;
+				if (value > maximums[band]) maximums[band] = value;
+			}
+		}
+		return new Spectrogram(FloatBuffer.wrap(values, 0, frames * count), frames, count, minimums, maximums);
+	}
+	
+	public Scale getScale() {
+		return scale;
+	}
+	
+	/**
+	 * Indicates the number of aggregated bands.
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	/**
+	 * Returns the lower edge of the given band in Hz. The upper edge of the last band is returned for an index equal to the number of bands.
+	 */
+	public float getFrequency(int band) {
+		return frequencies[band];
+	}
+	
+	@Override
+	public String toString() {
+		return count + " " + scale + " bands";
+	}
+	
+	/**
+	 * Spacing of the aggregated bands.
+	 */
+	public static enum Scale {
+		Linear {
+			@Override
+			double frequency(double position, double minimum, double nyquist) {
+				return position * nyquist;
+			}
+		},
+		Logarithmic {
+			@Override
+			double frequency(double position, double minimum, double nyquist) {
+				return (position == 0) ? 0 : minimum * Math.pow(nyquist / minimum, position);
+			}
+		},
+		Mel {
+			@Override
+			double frequency(double position, double minimum, double nyquist) {
+				double mel = position * 2595 * Math.log10(1 + nyquist / 700);
+				return 700 * (Math.pow(10, mel / 2595) - 1);
+			}
+		};
+		
+		/**
+		 * Returns the frequency at the given position in the range [0, 1] between zero and the nyquist frequency. Logarithmic scales start at the given minimum frequency.
+		 */
+		abstract double frequency(double position, double minimum, double nyquist);
+		
+		/**
+		 * Returns the scale with the given name, ignoring case, or {@link #Logarithmic} if there is none.
+		 */
+		public static Scale forName(String name) {
+			for (Scale scale : values()) {
+				if (scale.name().equalsIgnoreCase(name)) return scale;
+			}
+			Log.warning("Unknown band scale \"%s\", using %s instead.", name, Logarithmic);
+			return Logarithmic;
+		}
+	}
+	
+}
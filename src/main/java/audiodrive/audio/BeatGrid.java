@@ -0,0 +1,192 @@
+package audiodrive.audio;
+
+import audiodrive.audio.analysis.FastFourierTransformation;
+
+/**
+ * Tempo and phase of the beats of an audio track. The tempo is estimated from the autocorrelation of the onset detection function, which is calculated with an FFT in
+ * O(n log n), and weighted towards common tempos. The phase is the offset at which a comb of beats collects the most onsets.
+ */
+public class BeatGrid {
+	
+	/** Range of the estimated tempo in beats per minute. */
+	public static final double MinimumTempo = 60;
+	public static final double MaximumTempo = 200;
+	/** Tempo around which the estimation is weighted, with a standard deviation of one octave. */
+	private static final double PreferredTempo = 120;
+	
+	private final double period;
+	private final double offset;
+	private final double confidence;
+	
+	/**
+	 * Creates a grid of beats with the given period and offset of the first beat in seconds. The confidence is in the range [0, 1].
+	 */
+	public BeatGrid(double period, double offset, double confidence) {
+		this.period = period;
+		this.offset = offset;
+		this.confidence = confidence;
+	}
+	
+	/**
+	 * Estimates the beat grid from the onset detection function of the given number of iterations per second.
+	 */
+	public static BeatGrid estimate(AnalyzationData onsets, double iterationRate) {
+		int n = onsets.size();
+		int minimumLag = (int) Math.floor(60 * iterationRate / MaximumTempo);
+		int maximumLag = (int) Math.ceil(60 * iterationRate / MinimumTempo);
+		// the autocorrelation of lags beyond half of the track is dominated by too few products
+		if (minimumLag < 1 || 2 * maximumLag + 2 >= n / 2) return new BeatGrid(60 / PreferredTempo, 0, 0);
+		double mean = 0;
+		for (int i = 0; i < n; i++) {
+			mean += onsets.get(i);
+		}
+		mean /= n;
+		double[] correlation = autocorrelation(onsets, mean, iterationRate);
+		if (correlation[0] <= 0) return new BeatGrid(60 / PreferredTempo, 0, 0);
+		// unbiased autocorrelation, so that longer lags aren't penalized for fewer products
+		double[] unbiased = new double[n / 2];
+		for (int lag = 0; lag < unbiased.length; lag++) {
+			unbiased[lag] = correlation[lag] / (n - lag);
+		}
+		// periods between whole iterations spread their correlation over the neighboring lags
+		double[] smoothed = new double[unbiased.length];
+		for (int lag = 1; lag < unbiased.length - 1; lag++) {
+			smoothed[lag] = unbiased[lag - 1] + unbiased[lag] + unbiased[lag + 1];
+		}
+		double[] score = new double[maximumLag + 2];
+		int best = minimumLag;
+		for (int lag = minimumLag - 1; lag <= maximumLag + 1; lag++) {
+			double tempo = 60 * iterationRate / lag;
+			double octaves = Math.log(tempo / PreferredTempo) / Math.log(2);
+			// beats at the lag usually correlate at twice the lag as well, which resolves the ambiguity between a tempo and its half
+			double harmonics = smoothed[lag] + 0.5 * smoothed[2 * lag];
+			score[lag] = harmonics * Math.exp(-0.5 * octaves * octaves);
+			if (lag >= minimumLag && lag <= maximumLag && score[lag] > score[best]) best = lag;
+		}
+		double period = refine(unbiased, best + interpolate(score[best - 1], score[best], score[best + 1]));
+		double confidence = Math.max(0, Math.min(1, correlation[best] / correlation[0]));
+		return new BeatGrid(period / iterationRate, phase(onsets, period) / iterationRate, confidence);
+	}
+	
+	/**
+	 * Refines the period from the autocorrelation maxima at doubling multiples of it, whose position is less affected by the rounding to whole iterations. Small errors of
+	 * the period would otherwise accumulate over the beats of the whole track. Each step leaves an error of less than an iteration at the next multiple.
+	 */
+	private static double refine(double[] correlation, double period) {
+		int radius = Math.max(1, Math.min(2, (int) (period / 2) - 1));
+		for (int multiple = 2; multiple * period + radius + 1 < correlation.length; multiple *= 2) {
+			int expected = (int) Math.round(multiple * period);
+			int best = expected;
+			for (int lag = Math.max(1, expected - radius); lag <= expected + radius && lag + 1 < correlation.length; lag++) {
+				if (correlation[lag] > correlation[best]) best = lag;
+			}
+			if (best < 1 || best + 1 >= correlation.length) break;
+			period = (best + interpolate(correlation[best - 1], correlation[best], correlation[best + 1])) / multiple;
+		}
+		return period;
+	}
+	
+	/**
+	 * Calculates the autocorrelation of the mean-free onsets as inverse FFT of their power spectrum. Zero padding to at least twice the length avoids circular wrap-around.
+	 * Single precision suffices, since only the positions of the maxima matter.
+	 */
+	private static double[] autocorrelation(AnalyzationData onsets, double mean, double iterationRate) {
+		int size = Integer.highestOneBit(2 * onsets.size() - 1) << 1;
+		float[] signal = new float[size];
+		for (int i = 0; i < onsets.size(); i++) {
+			signal[i] = (float) (onsets.get(i) - mean);
+		}
+		FastFourierTransformation fft = new FastFourierTransformation(size, (float) iterationRate);
+		fft.forward(signal);
+		float[] real = fft.getRealPart();
+		float[] imaginary = fft.getImaginaryPart();
+		for (int i = 0; i < size; i++) {
+			real[i] = real[i] * real[i] + imaginary[i] * imaginary[i];
+			imaginary[i] = 0;
+		}
+		fft.inverse(signal);
+		double[] correlation = new double[size];
+		for (int i = 0; i < size; i++) {
+			correlation[i] = signal[i];
+		}
+		return correlation;
+	}
+	
+	/**
+	 * Returns the offset of the maximum of the parabola through three equidistant values from the middle one, in the range [-0.5, 0.5].
+	 */
+	private static double interpolate(double previous, double current, double next) {
+		double curvature = previous - 2 * current + next;
+		if (curvature >= 0) return 0;
+		return Math.max(-0.5, Math.min(0.5, 0.5 * (previous - next) / curvature));
+	}
+	
+	/**
+	 * Returns the offset in iterations within the first period, at which the beats collect the most onsets.
+	 */
+	private static double phase(AnalyzationData onsets, double period) {
+		int best = 0;
+		double maximum = Double.NEGATIVE_INFINITY;
+		for (int phase = 0; phase < period; phase++) {
+			double sum = 0;
+			for (double position = phase; position < onsets.size() - 0.5; position += period) {
+				sum += onsets.get((int) Math.round(position));
+			}
+			if (sum > maximum) {
+				maximum = sum;
+				best = phase;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Returns the tempo in beats per minute.
+	 */
+	public double getTempo() {
+		return 60 / period;
+	}
+	
+	/**
+	 * Returns the duration of a beat in seconds.
+	 */
+	public double getPeriod() {
+		return period;
+	}
+	
+	/**
+	 * Returns the time of the first beat in seconds.
+	 */
+	public double getOffset() {
+		return offset;
+	}
+	
+	/**
+	 * Indicates how periodic the onsets are in the range [0, 1], i.e. their normalized autocorrelation at the beat period. A confidence of 0 means no tempo could be
+	 * estimated.
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+	
+	/**
+	 * Returns the time of the beat with the given index in seconds.
+	 */
+	public double getBeat(int index) {
+		return offset + index * period;
+	}
+	
+	/**
+	 * Returns the time of the nearest grid position, given the number of subdivisions per beat.
+	 */
+	public double quantize(double time, int subdivisions) {
+		double step = period / Math.max(1, subdivisions);
+		return offset + Math.round((time - offset) / step) * step;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%.1f BPM", getTempo());
+	}
+	
+}
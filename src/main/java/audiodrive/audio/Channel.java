@@ -1,5 +1,6 @@
 package audiodrive.audio;
 
+import java.nio.FloatBuffer;
 import java.util.stream.Stream;
 
 public interface Channel {
@@ -20,12 +21,12 @@ public interface Channel {
 	Channel rewind();
 	
 	/**
-	 * Returns all samples of the channel.
+	 * Returns a read-only view of all samples of the channel, which may be backed by a memory-mapped file for long audio.
 	 */
-	float[] getSamples();
+	FloatBuffer getSamples();
 	
 	/**
-	 * Returns the next iteration of samples at a specific index.
+	 * Returns the iteration of samples at a specific index, which starts at <code>index * getHop()</code>.
 	 */
 	float[] getSamples(int index);
 	
@@ -54,4 +55,9 @@ public interface Channel {
 	 */
 	int getIteration();
 	
+	/**
+	 * Indicates the number of samples between the beginnings of successive iterations.
+	 */
+	int getHop();
+	
 }
\ No newline at end of file
@@ -0,0 +1,408 @@
+package audiodrive.audio;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import audiodrive.audio.analysis.FastFourierTransformation;
+import audiodrive.audio.analysis.FourierTransformation;
+import audiodrive.audio.analysis.RealFastFourierTransformation;
+import audiodrive.audio.analysis.WindowFunction;
+
+/**
+ * Incrementally analyzes a single channel while its samples are being decoded. Spectra are calculated as soon as a whole iteration of samples is available, iterations start
+ * every hop samples and overlap if the hop is smaller than the iteration. Spectral sum, flux and onset detection function are calculated right after each spectrum, and
+ * threshold and peaks of the onset detection function as soon as the threshold window of an iteration is complete. The spectra can be spilled to a memory-mapped temporary file, so that only the per iteration
+ * features have to fit on the heap. Features which aren't requested up front are left to be calculated on first access.
+ */
+class ChannelAnalyzer {
+	
+	/** Transformation of each worker thread, reused for every iteration of the same size. */
+	private static final ThreadLocal<FourierTransformation> Transformations = new ThreadLocal<>();
+	/** Buffers of each worker thread, used to transform samples from and store spectra to memory-mapped files. */
+	private static final ThreadLocal<float[][]> Buffers = new ThreadLocal<>();
+	
+	private final int channel;
+	private final int iteration;
+	private final int hop;
+	private final float sampleRate;
+	private final int thresholdWindowSize;
+	private final float thresholdMultiplier;
+	private final boolean realTransformation;
+	private final WindowFunction windowFunction;
+	private final AudioAnalyzer.ThresholdMethod thresholdMethod;
+	private final Spectrogram.Precision precision;
+	private final BandAggregation aggregation;
+	private final OnsetDetector detector;
+	
+	private final int bandCount;
+	/** Spectra of all iterations, stored contiguously one after another. */
+	private final FloatStorage spectra;
+	/** Aggregated bands of all iterations, stored contiguously one after another. */
+	private float[] aggregatedBands;
+	private int frames;
+	/** Spectral sum and flux, or <code>null</code> if they are calculated on first access. */
+	private float[] spectralSum;
+	private float[] spectralFlux;
+	/** Onset detection function, or <code>null</code> if it is calculated on first access or equal to the spectral flux. */
+	private final OnsetDetector.Function detection;
+	private float[] onsets;
+	/** Threshold and peaks, or <code>null</code> if they are calculated on first access. */
+	private final Thresholding thresholding;
+	
+	private final Statistics spectralSumStatistics = new Statistics();
+	private final Statistics spectralFluxStatistics = new Statistics();
+	private final Statistics onsetStatistics = new Statistics();
+	private final float[] bandMinimums;
+	private final float[] bandMaximums;
+	
+	ChannelAnalyzer(AudioAnalyzer analyzer, int channel, int iteration, int hop, float sampleRate, int thresholdWindowSize, int expectedIterations, boolean mapped) {
+		this.channel = channel;
+		this.iteration = iteration;
+		this.hop = hop;
+		this.sampleRate = sampleRate;
+		this.thresholdWindowSize = thresholdWindowSize;
+		thresholdMultiplier = analyzer.getThresholdMultiplier();
+		thresholdMethod = analyzer.getThresholdMethod();
+		realTransformation = analyzer.isRealTransformation();
+		windowFunction = analyzer.getWindowFunction();
+		precision = analyzer.getPrecision();
+		detector = analyzer.getOnsetDetector();
+		bandCount = iteration / 2 + 1;
+		aggregation = analyzer.createBandAggregation(bandCount, sampleRate);
+		aggregatedBands = new float[expectedIterations * aggregation.getCount()];
+		spectra = FloatStorage.create((int) Math.min(FloatStorage.MaximumCapacity, (long) expectedIterations * bandCount), mapped);
+		bandMinimums = new float[bandCount];
+		bandMaximums = new float[bandCount];
+		Arrays.fill(bandMinimums, Float.POSITIVE_INFINITY);
+		Arrays.fill(bandMaximums, Float.NEGATIVE_INFINITY);
+		Set<AnalyzedChannel.Feature> features = analyzer.getFeatures();
+		boolean thresholds = features.contains(AnalyzedChannel.Feature.Threshold) || features.contains(AnalyzedChannel.Feature.Peaks);
+		if (features.contains(AnalyzedChannel.Feature.SpectralSum)) spectralSum = new float[expectedIterations];
+		// the spectral flux detector reuses the spectral flux instead of calculating it twice
+		boolean flux = detector == OnsetDetector.SpectralFlux;
+		if ((thresholds && flux) || features.contains(AnalyzedChannel.Feature.SpectralFlux)) spectralFlux = new float[expectedIterations];
+		if (thresholds && !flux) onsets = new float[expectedIterations];
+		detection = (onsets != null) ? detector.create(bandCount, sampleRate, iteration / hop) : null;
+		thresholding = thresholds ? thresholding(expectedIterations) : null;
+	}
+	
+	/**
+	 * Creates the calculation of threshold and peaks with the parameters of this analyzer.
+	 */
+	private Thresholding thresholding(int capacity) {
+		return new Thresholding(thresholdWindowSize, thresholdMultiplier, thresholdMethod, capacity);
+	}
+	
+	/**
+	 * Analyzes all complete iterations of the block which haven't been analyzed yet.
+	 */
+	void analyze(AudioDecoder.Block block) {
+		FloatBuffer samples = block.getSamples(channel);
+		int from = frames;
+		int to = (block.sampleCount < iteration) ? 0 : (block.sampleCount - iteration) / hop + 1;
+		if (to <= from) return;
+		ensureCapacity(to);
+		IntStream.range(from, to).parallel().forEach(index -> calculateSpectrum(samples, index));
+		while (frames < to) {
+			add(frames++);
+		}
+		if (thresholding != null) thresholding.update(onsets(), frames);
+	}
+	
+	/**
+	 * Completes the analysis of the remaining iterations and returns the results.
+	 */
+	AnalyzedChannel finish(Channel channel) {
+		int size = frames;
+		if (thresholding != null) thresholding.finish(onsets(), size);
+		spectra.close();
+		Spectrogram spectrogram = new Spectrogram(spectra.slice(size * bandCount), size, bandCount, bandMinimums, bandMaximums);
+		AnalyzationData spectralSum = (this.spectralSum != null) ? spectralSumStatistics.data(this.spectralSum, size) : null;
+		AnalyzationData spectralFlux = (this.spectralFlux != null) ? spectralFluxStatistics.data(this.spectralFlux, size) : null;
+		// mapped spectra aren't resident anyway, compacting them would move them onto the heap
+		if (!spectra.isMapped() && precision != spectrogram.getPrecision()) {
+			// the features derived from the spectra are calculated from the full precision ones, so they don't depend on the precision
+			if (spectralSum == null) spectralSum = AnalyzedChannel.spectralSum(spectrogram);
+			if (spectralFlux == null) spectralFlux = AnalyzedChannel.spectralFlux(spectrogram);
+			spectrogram = spectrogram.compact(precision);
+		}
+		return new AnalyzedChannel(
+			channel,
+			spectrogram,
+			aggregation.spectrogram(aggregatedBands, size),
+			detector,
+			spectralSum,
+			spectralFlux,
+			(onsets != null) ? onsetStatistics.data(onsets, size) : null,
+			(thresholding != null) ? thresholding.threshold() : null,
+			(thresholding != null) ? thresholding.peaks() : null,
+			(thresholding != null) ? null : thresholding(0));
+	}
+	
+	int getIterationCount() {
+		return frames;
+	}
+	
+	/**
+	 * Returns the values of the onset detection function, which are those of the spectral flux for the spectral flux detector.
+	 */
+	private float[] onsets() {
+		return (onsets != null) ? onsets : spectralFlux;
+	}
+	
+	/**
+	 * Calculates the spectrum of the given iteration. Samples and spectra are accessed directly if they are on the heap, and copied through buffers of the worker thread if
+	 * they are mapped.
+	 */
+	private void calculateSpectrum(FloatBuffer samples, int index) {
+		float[] source;
+		int offset;
+		if (samples.hasArray()) {
+			source = samples.array();
+			offset = samples.arrayOffset() + index * hop;
+		} else {
+			source = buffers()[0];
+			offset = 0;
+			FloatBuffer view = samples.duplicate();
+			view.position(index * hop);
+			view.get(source);
+		}
+		if (spectra.array() != null) {
+			transformation().forward(source, offset, spectra.array(), index * bandCount);
+		} else {
+			float[] spectrum = buffers()[1];
+			transformation().forward(source, offset, spectrum, 0);
+			spectra.put(index * bandCount, spectrum, 0, bandCount);
+		}
+	}
+	
+	private float[][] buffers() {
+		float[][] buffers = Buffers.get();
+		if (buffers == null || buffers[0].length != iteration) {
+			buffers = new float[][] { new float[iteration], new float[bandCount] };
+			Buffers.set(buffers);
+		}
+		return buffers;
+	}
+	
+	private FourierTransformation transformation() {
+		FourierTransformation fft = Transformations.get();
+		if (fft == null || fft.timeSize() != iteration || fft.sampleRate() != (int) sampleRate || (fft instanceof RealFastFourierTransformation) != realTransformation) {
+			fft = realTransformation ? new RealFastFourierTransformation(iteration, sampleRate) : new FastFourierTransformation(iteration, sampleRate);
+			Transformations.set(fft);
+		}
+		fft.window(windowFunction);
+		return fft;
+	}
+	
+	/**
+	 * Calculates spectral sum and flux of the spectrum at the given index in a single sweep, which also gathers the statistics of each band, aggregates its bands and feeds
+	 * it to the onset detection function.
+	 */
+	private void add(int index) {
+		FloatBuffer spectra = this.spectra.buffer();
+		int offset = index * bandCount;
+		int lastOffset = offset - bandCount;
+		boolean difference = spectralFlux != null && index > 0;
+		float sum = 0;
+		float flux = 0;
+		for (int i = 0; i < bandCount; i++) {
+			float amplitude = spectra.get(offset + i);
+			sum += amplitude;
+			if (difference) {
+				float value = (amplitude - spectra.get(lastOffset + i));
+				flux += value < 0 ? 0 : value;
+			}
+			if (amplitude < bandMinimums[i]) bandMinimums[i] = amplitude;
+			if (amplitude > bandMaximums[i]) bandMaximums[i] = amplitude;
+		}
+		aggregation.aggregate(spectra, offset, aggregatedBands, index * aggregation.getCount());
+		if (spectralSum != null) {
+			spectralSum[index] = sum;
+			spectralSumStatistics.add(sum);
+		}
+		if (spectralFlux != null) {
+			spectralFlux[index] = flux;
+			spectralFluxStatistics.add(flux);
+		}
+		if (detection != null) {
+			onsets[index] = detection.next(spectra, offset);
+			onsetStatistics.add(onsets[index]);
+		}
+	}
+	
+	/**
+	 * Returns the onset detection value exceeding the threshold, or 0 if it doesn't exceed it.
+	 */
+	static float prune(float onset, float threshold) {
+		return (threshold <= onset) ? onset - threshold : 0;
+	}
+	
+	private void ensureCapacity(int capacity) {
+		spectra.ensureCapacity((long) capacity * bandCount);
+		spectralSum = grow(spectralSum, capacity);
+		spectralFlux = grow(spectralFlux, capacity);
+		onsets = grow(onsets, capacity);
+		aggregatedBands = grow(aggregatedBands, capacity * aggregation.getCount());
+	}
+	
+	/**
+	 * Grows the array geometrically if it is smaller than the given capacity. Returns <code>null</code> if the array is <code>null</code>.
+	 */
+	private static float[] grow(float[] array, int capacity) {
+		if (array == null || capacity <= array.length) return array;
+		return Arrays.copyOf(array, Math.max(capacity, array.length + (array.length >> 1)));
+	}
+	
+	/**
+	 * Calculates threshold, prunned onset detection function and peaks from the onset detection function. It is either updated while the detection function is being
+	 * calculated, or finished at once from the complete detection function.
+	 */
+	static class Thresholding {
+		
+		private final int windowSize;
+		private final float multiplier;
+		private final AudioAnalyzer.ThresholdMethod method;
+		
+		private float[] threshold;
+		private float[] peaks;
+		private int count;
+		private float lastPrunnedOnset;
+		private final Statistics thresholdStatistics = new Statistics();
+		private final Statistics peaksStatistics = new Statistics();
+		
+		/** Prefix sums of the onset detection function, i.e. the sum of the first i values at index i. */
+		private double[] sums;
+		private int summed;
+		/** Sorted onset detection values of the current threshold window, used for the median. */
+		private float[] window;
+		private int windowLength;
+		private int windowStart;
+		private int windowEnd;
+		
+		Thresholding(int windowSize, float multiplier, AudioAnalyzer.ThresholdMethod method, int capacity) {
+			this.windowSize = windowSize;
+			this.multiplier = multiplier;
+			this.method = method;
+			threshold = new float[capacity];
+			peaks = new float[capacity];
+			sums = new double[capacity + 1];
+			if (method == AudioAnalyzer.ThresholdMethod.Median) window = new float[2 * windowSize + 1];
+		}
+		
+		/**
+		 * Calculates the thresholds which are final given the first values of the onset detection function, i.e. those whose whole window is known.
+		 */
+		void update(float[] onsets, int frames) {
+			if (frames > threshold.length) {
+				threshold = grow(threshold, frames);
+				peaks = grow(peaks, threshold.length);
+				sums = Arrays.copyOf(sums, threshold.length + 1);
+			}
+			while (summed < frames) {
+				sums[summed + 1] = sums[summed] + onsets[summed];
+				summed++;
+			}
+			while (count + windowSize < frames) {
+				calculate(onsets, frames, count++);
+			}
+		}
+		
+		/**
+		 * Calculates the remaining thresholds given the complete onset detection function.
+		 */
+		void finish(float[] onsets, int frames) {
+			update(onsets, frames);
+			while (count < frames) {
+				calculate(onsets, frames, count++);
+			}
+			// the last iteration can't be a peak
+			peaksStatistics.add(0);
+		}
+		
+		AnalyzationData threshold() {
+			return thresholdStatistics.data(threshold, count);
+		}
+		
+		AnalyzationData peaks() {
+			return peaksStatistics.data(peaks, count);
+		}
+		
+		/**
+		 * Calculates threshold and prunned onset detection value of the given iteration, as well as the peak of the previous iteration. The prunned value is only kept until
+		 * the peak is known.
+		 */
+		private void calculate(float[] onsets, int frames, int index) {
+			int start = Math.max(0, index - windowSize);
+			int end = Math.min(frames - 1, index + windowSize);
+			switch (method) {
+			case Median:
+				threshold[index] = median(onsets, start, end) * multiplier;
+				break;
+			default:
+				float mean = (float) ((sums[end + 1] - sums[start]) / (end - start));
+				threshold[index] = mean * multiplier;
+				break;
+			}
+			thresholdStatistics.add(threshold[index]);
+			float prunnedOnset = prune(onsets[index], threshold[index]);
+			if (index > 0) {
+				int previous = index - 1;
+				if (lastPrunnedOnset > prunnedOnset) peaks[previous] = lastPrunnedOnset;
+				else peaks[previous] = 0;
+				peaksStatistics.add(peaks[previous]);
+			}
+			lastPrunnedOnset = prunnedOnset;
+		}
+		
+		/**
+		 * Returns the median onset detection value of the iterations in the range [start, end]. Both bounds never decrease between calls, so the sorted window is updated by
+		 * inserting the values entering and removing the values leaving the range.
+		 */
+		private float median(float[] onsets, int start, int end) {
+			while (windowStart < start) {
+				int position = Arrays.binarySearch(window, 0, windowLength, onsets[windowStart++]);
+				System.arraycopy(window, position + 1, window, position, windowLength - position - 1);
+				windowLength--;
+			}
+			while (windowEnd <= end) {
+				float value = onsets[windowEnd++];
+				int position = Arrays.binarySearch(window, 0, windowLength, value);
+				if (position < 0) position = -(position + 1);
+				System.arraycopy(window, position, window, position + 1, windowLength - position);
+				window[position] = value;
+				windowLength++;
+			}
+			int middle = windowLength / 2;
+			return (windowLength % 2 == 1) ? window[middle] : (window[middle - 1] + window[middle]) / 2;
+		}
+		
+	}
+	
+	/**
+	 * Minimum and maximum of values, gathered while they are calculated.
+	 */
+	private static class Statistics {
+		
+		private float minimum = Float.POSITIVE_INFINITY;
+		private float maximum = Float.NEGATIVE_INFINITY;
+		
+		private void add(float value) {
+			if (value < minimum) minimum = value;
+			if (value > maximum) maximum = value;
+		}
+		
+		private AnalyzationData data(float[] values, int size) {
+			return new AnalyzationData(values.length == size ? values : Arrays.copyOf(values, size), minimum, maximum);
+		}
+		
+	}
+	
+	@Override
+	public String toString() {
+		return (channel < 0) ? "channel mix" : "channel " + channel;
+	}
+	
+}
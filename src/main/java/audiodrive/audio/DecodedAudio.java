@@ -1,10 +1,12 @@
 package audiodrive.audio;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.tritonus.share.sampled.FloatSampleBuffer;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
 
 import audiodrive.utilities.Arithmetic;
 
@@ -18,29 +20,29 @@ public class DecodedAudio implements Audio {
 	private final List<DecodedChannel> channels;
 	private final DecodedChannel mix;
 	private int iteration;
+	private int hop;
 	private double iterationRate;
 	
-	DecodedAudio(AudioResource file, FloatSampleBuffer buffer) {
+	DecodedAudio(AudioResource file, FloatBuffer[] samples, FloatBuffer mix, int sampleCount, float sampleRate) {
 		name = file.getName().substring(0, file.getName().lastIndexOf("."));
 		this.resource = file;
-		sampleCount = buffer.getSampleCount();
-		sampleRate = buffer.getSampleRate();
-		channelCount = buffer.getChannelCount();
+		this.sampleCount = sampleCount;
+		this.sampleRate = sampleRate;
+		channelCount = samples.length;
 		List<DecodedChannel> channels = new ArrayList<>();
 		for (int channel = 0; channel < channelCount; channel++) {
-			channels.add(new DecodedChannel(channel, buffer.getChannel(channel), sampleCount, (float) sampleRate, iteration));
+			channels.add(new DecodedChannel(channel, samples[channel], sampleCount, sampleRate, iteration));
 		}
 		this.channels = Collections.unmodifiableList(channels);
-		float[] mix = new float[sampleCount];
-		for (int index = 0; index < sampleCount; index++) {
-			float value = 0;
-			for (int channel = 0; channel < channelCount; channel++) {
-				value += buffer.getChannel(channel)[index];
-			}
-			mix[index++] = value / channelCount;
-		}
-		this.mix = new DecodedChannel(-1, mix, sampleCount, (float) sampleRate, iteration);
-		setIteration(Arithmetic.nextPowerOfTwo((int) (buffer.getSampleRate() / 50)));
+		this.mix = new DecodedChannel(-1, mix, sampleCount, sampleRate, iteration);
+		setIteration(defaultIteration(sampleRate));
+	}
+	
+	/**
+	 * Returns the default number of samples per iteration for the given sample rate, i.e. about 50 iterations per second.
+	 */
+	static int defaultIteration(double sampleRate) {
+		return Arithmetic.nextPowerOfTwo((int) (sampleRate / 50));
 	}
 	
 	protected DecodedAudio(Audio audio) {
@@ -49,6 +51,7 @@ public class DecodedAudio implements Audio {
 		sampleCount = audio.getSampleCount();
 		sampleRate = audio.getSampleRate();
 		iteration = audio.getIteration();
+		hop = audio.getHop();
 		iterationRate = audio.getIterationRate();
 		channelCount = audio.getChannelCount();
 		channels = null;
@@ -95,10 +98,14 @@ public class DecodedAudio implements Audio {
 		return mix;
 	}
 	
+	/**
+	 * {@inheritDoc} Also resets the hop to the iteration, i.e. no overlap.
+	 */
 	@Override
 	public DecodedAudio setIteration(int samples) {
 		iteration = samples;
-		iterationRate = sampleRate / iteration;
+		hop = samples;
+		iterationRate = sampleRate / hop;
 		channels.forEach(channel -> {
 			channel.setIteration(samples);
 		});
@@ -106,16 +113,49 @@ public class DecodedAudio implements Audio {
 		return this;
 	}
 	
+	@Override
+	public DecodedAudio setHop(int samples) {
+		if (samples < 1 || samples > iteration) throw new IllegalArgumentException("Hop must be in the range [1, " + iteration + "].");
+		hop = samples;
+		iterationRate = sampleRate / hop;
+		channels.forEach(channel -> {
+			channel.setHop(samples);
+		});
+		mix.setHop(samples);
+		return this;
+	}
+	
 	@Override
 	public int getIteration() {
 		return iteration;
 	}
 	
+	@Override
+	public int getHop() {
+		return hop;
+	}
+	
 	@Override
 	public double getIterationRate() {
 		return iterationRate;
 	}
 	
+	/**
+	 * Opens an audio input stream on the decoded samples, which doesn't have to decode the file again.
+	 */
+	public AudioInputStream open() {
+		return open(0);
+	}
+	
+	/**
+	 * Opens an audio input stream on the decoded samples starting at the given sample, which is positioned instantly.
+	 */
+	public AudioInputStream open(long sample) {
+		int start = (int) Math.max(0, Math.min(getSampleCount(), sample));
+		AudioFormat format = new AudioFormat((float) getSampleRate(), 16, getChannelCount(), true, false);
+		return new AudioInputStream(new PcmInputStream(this, start), format, getSampleCount() - start);
+	}
+	
 	@Override
 	public String toString() {
 		return "Decoded " + resource.getName();
@@ -1,5 +1,6 @@
 package audiodrive.audio;
 
+import java.nio.FloatBuffer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -8,18 +9,20 @@ import audiodrive.utilities.Range;
 public class DecodedChannel implements Channel {
 	
 	private int channel;
-	private float[] samples;
+	private FloatBuffer samples;
 	private int iteration;
+	private int hop;
 	private int sampleCount;
 	private float sampleRate;
 	private int offset = 0;
 	
-	DecodedChannel(int index, float[] samples, int sampleCount, float sampleRate, int iteration) {
+	DecodedChannel(int index, FloatBuffer samples, int sampleCount, float sampleRate, int iteration) {
 		channel = index;
 		this.samples = samples;
 		this.sampleCount = sampleCount;
 		this.sampleRate = sampleRate;
 		this.iteration = iteration;
+		hop = iteration;
 	}
 	
 	protected DecodedChannel(Channel channel) {
@@ -28,10 +31,18 @@ public class DecodedChannel implements Channel {
 		sampleCount = channel.getSampleCount();
 		sampleRate = channel.getSampleRate();
 		iteration = channel.getIteration();
+		hop = channel.getHop();
 	}
 	
 	Channel setIteration(int samples) {
 		iteration = samples;
+		hop = samples;
+		rewind();
+		return this;
+	}
+	
+	Channel setHop(int samples) {
+		hop = samples;
 		rewind();
 		return this;
 	}
@@ -44,11 +55,8 @@ public class DecodedChannel implements Channel {
 	@Override
 	public float[] nextSamples() {
 		if (!hasMoreSamples()) return null;
-		float[] samples = new float[iteration];
-		int remaining = sampleCount - offset;
-		int n = Math.min(iteration, remaining);
-		System.arraycopy(this.samples, offset, samples, 0, n);
-		offset += iteration;
+		float[] samples = read(offset);
+		offset += hop;
 		return samples;
 	}
 	
@@ -59,22 +67,29 @@ public class DecodedChannel implements Channel {
 	}
 	
 	@Override
-	public float[] getSamples() {
-		return samples;
+	public FloatBuffer getSamples() {
+		return samples.asReadOnlyBuffer();
 	}
 	
 	@Override
 	public float[] getSamples(int index) {
+		return read(index * hop);
+	}
+	
+	/**
+	 * Copies an iteration of samples starting at the given offset, padded with zeros at the end of the channel.
+	 */
+	private float[] read(int offset) {
 		float[] samples = new float[iteration];
-		int offset = index * iteration;
-		int remaining = sampleCount - offset;
-		System.arraycopy(this.samples, offset, samples, 0, Math.min(iteration, remaining));
+		FloatBuffer view = this.samples.duplicate();
+		view.position(offset);
+		view.get(samples, 0, Math.min(iteration, sampleCount - offset));
 		return samples;
 	}
 	
 	@Override
 	public Stream<float[]> stream() {
-		int indices = sampleCount / iteration;
+		int indices = (sampleCount < iteration) ? 0 : (sampleCount - iteration) / hop + 1;
 		return IntStream.range(0, indices).mapToObj(index -> {
 			return getSamples(index);
 		});
@@ -100,13 +115,24 @@ public class DecodedChannel implements Channel {
 		return iteration;
 	}
 	
+	@Override
+	public int getHop() {
+		return hop;
+	}
+	
 	@Override
 	public String toString() {
 		return (channel < 0) ? "channel mix" : "channel " + channel;
 	}
 	
 	public Range getRange() {
-		return Range.of(getSamples());
+		float minimum = 0, maximum = 0;
+		for (int i = 0; i < sampleCount; i++) {
+			float value = samples.get(i);
+			minimum = Math.min(minimum, value);
+			maximum = Math.max(maximum, value);
+		}
+		return new Range(minimum, maximum);
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package audiodrive.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Growable storage of float values, which is either kept in an array on the heap or spilled to a memory-mapped temporary file. Mapped values are paged in and out by the
+ * operating system, so only the recently accessed part of them occupies memory. A single mapping is limited to 2 GB, i.e. {@value #MaximumCapacity} values.
+ */
+class FloatStorage {
+	
+	/** Maximum number of values, limited by the size of a single mapping. */
+	static final int MaximumCapacity = Integer.MAX_VALUE / Float.BYTES;
+	
+	private final FileChannel file;
+	private FloatBuffer buffer;
+	private float[] array;
+	
+	private FloatStorage(FileChannel file, int capacity) {
+		this.file = file;
+		if (file == null) {
+			array = new float[capacity];
+			buffer = FloatBuffer.wrap(array);
+		} else {
+			map(capacity);
+		}
+	}
+	
+	/**
+	 * Creates a storage on the heap.
+	 */
+	static FloatStorage heap(int capacity) {
+		return new FloatStorage(null, capacity);
+	}
+	
+	/**
+	 * Creates a storage backed by a memory-mapped temporary file. The file is deleted right away if the platform allows it, otherwise on exit.
+	 */
+	static FloatStorage mapped(int capacity) {
+		try {
+			File temporary = File.createTempFile("audiodrive", ".floats");
+			FileChannel file = new RandomAccessFile(temporary, "rw").getChannel();
+			if (!temporary.delete()) temporary.deleteOnExit();
+			return new FloatStorage(file, capacity);
+		} catch (IOException exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+	
+	/**
+	 * Creates a storage on the heap, or a mapped one if it is requested.
+	 */
+	static FloatStorage create(int capacity, boolean mapped) {
+		return mapped ? mapped(capacity) : heap(capacity);
+	}
+	
+	private void map(int capacity) {
+		try {
+			buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		} catch (IOException exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+	
+	/**
+	 * Grows the storage geometrically, so that it can hold at least the given number of values. Buffers returned before stay valid, but don't reflect values stored afterwards.
+	 */
+	void ensureCapacity(long required) {
+		if (required <= capacity()) return;
+		if (required > MaximumCapacity) throw new IllegalStateException("Can't store more than " + MaximumCapacity + " values.");
+		int capacity = (int) Math.min(MaximumCapacity, Math.max(required, capacity() + (capacity() >> 1)));
+		if (file == null) {
+			array = Arrays.copyOf(array, capacity);
+			buffer = FloatBuffer.wrap(array);
+		} else {
+			map(capacity);
+		}
+	}
+	
+	int capacity() {
+		return buffer.capacity();
+	}
+	
+	/**
+	 * Indicates whether the values are spilled to a memory-mapped file.
+	 */
+	boolean isMapped() {
+		return file != null;
+	}
+	
+	/**
+	 * Returns the backing array, or <code>null</code> if the storage is mapped.
+	 */
+	float[] array() {
+		return array;
+	}
+	
+	/**
+	 * Returns the storage as buffer for absolute access.
+	 */
+	FloatBuffer buffer() {
+		return buffer;
+	}
+	
+	/**
+	 * Returns a buffer containing the first values of the storage.
+	 */
+	FloatBuffer slice(int length) {
+		FloatBuffer slice = buffer.duplicate();
+		slice.limit(length);
+		return slice.slice();
+	}
+	
+	float get(int index) {
+		return buffer.get(index);
+	}
+	
+	void put(int index, float value) {
+		buffer.put(index, value);
+	}
+	
+	/**
+	 * Copies values into the storage, starting at the given index. Distinct ranges may be written concurrently.
+	 */
+	void put(int index, float[] source, int offset, int length) {
+		if (array != null) {
+			System.arraycopy(source, offset, array, index, length);
+		} else {
+			FloatBuffer view = buffer.duplicate();
+			view.position(index);
+			view.put(source, offset, length);
+		}
+	}
+	
+	/**
+	 * Closes the underlying file, if any. Buffers returned before stay valid.
+	 */
+	void close() {
+		if (file == null) return;
+		try {
+			file.close();
+		} catch (IOException exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+	
+}
@@ -0,0 +1,168 @@
+package audiodrive.audio;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Byte offsets of the frames of an MPEG audio file, which allow to start decoding at any frame. The index is built by scanning the frame headers, which doesn't decode
+ * anything, so it takes about as long as reading the file once.
+ */
+class FrameIndex {
+	
+	/**
+	 * Number of frames decoded and discarded before the seek target. Layer III frames may refer to data of the preceding frames (bit reservoir), which is therefore
+	 * decoded as well.
+	 */
+	static final int Preroll = 2;
+	
+	/** Bitrates in kbit/s, by version (MPEG 1, MPEG 2 and 2.5), layer (I, II, III) and index. */
+	private static final int[][][] Bitrates = {
+		{
+			{0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+			{0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+			{0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}},
+		{
+			{0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+			{0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+			{0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}}};
+	/** Sample rates in Hz, by version bits (MPEG 2.5, reserved, MPEG 2, MPEG 1) and index. */
+	private static final int[][] SampleRates = {{11025, 12000, 8000}, null, {22050, 24000, 16000}, {44100, 48000, 32000}};
+	
+	private final int sampleRate;
+	private final int samplesPerFrame;
+	private final long[] offsets;
+	private final int frameCount;
+	
+	private FrameIndex(int sampleRate, int samplesPerFrame, long[] offsets, int frameCount) {
+		this.sampleRate = sampleRate;
+		this.samplesPerFrame = samplesPerFrame;
+		this.offsets = offsets;
+		this.frameCount = frameCount;
+	}
+	
+	/**
+	 * Scans the frame headers of the audio resource. Returns <code>null</code> if it isn't an MPEG audio file.
+	 */
+	static FrameIndex scan(AudioResource resource) {
+		try (InputStream input = new BufferedInputStream(resource.getUrl().openStream())) {
+			return scan(input);
+		} catch (IOException exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+	
+	private static FrameIndex scan(InputStream input) throws IOException {
+		byte[] header = new byte[10];
+		long position = 0;
+		if (read(input, header, 10) < 10) return null;
+		if (header[0] == 'I' && header[1] == 'D' && header[2] == '3') {
+			// the tag size is a syncsafe integer, which excludes the header and the optional footer
+			long size = ((header[6] & 0x7F) << 21) | ((header[7] & 0x7F) << 14) | ((header[8] & 0x7F) << 7) | (header[9] & 0x7F);
+			if ((header[5] & 0x10) != 0) size += 10;
+			skip(input, size);
+			position = 10 + size;
+			if (read(input, header, 4) < 4) return null;
+		}
+		int version = -1;
+		int layer = -1;
+		int sampleRate = 0;
+		long[] offsets = new long[1024];
+		int count = 0;
+		while (true) {
+			int length = 0;
+			int b1 = header[1] & 0xFF;
+			int b2 = header[2] & 0xFF;
+			if ((header[0] & 0xFF) == 0xFF && (b1 & 0xE0) == 0xE0) {
+				int frameVersion = (b1 >> 3) & 3;
+				int frameLayer = 3 - ((b1 >> 1) & 3);
+				int bitrateIndex = b2 >> 4;
+				int sampleRateIndex = (b2 >> 2) & 3;
+				boolean consistent = version == -1 || (frameVersion == version && frameLayer == layer);
+				if (consistent && frameVersion != 1 && frameLayer != 3 && bitrateIndex != 0 && bitrateIndex != 15 && sampleRateIndex != 3) {
+					int bitrate = Bitrates[frameVersion == 3 ? 0 : 1][frameLayer][bitrateIndex] * 1000;
+					int frameSampleRate = SampleRates[frameVersion][sampleRateIndex];
+					int padding = (b2 >> 1) & 1;
+					if (sampleRate == 0 || frameSampleRate == sampleRate) {
+						if (frameLayer == 0) length = (12 * bitrate / frameSampleRate + padding) * 4;
+						else if (frameLayer == 2 && frameVersion != 3) length = 72 * bitrate / frameSampleRate + padding;
+						else length = 144 * bitrate / frameSampleRate + padding;
+						version = frameVersion;
+						layer = frameLayer;
+						sampleRate = frameSampleRate;
+					}
+				}
+			}
+			if (length > 4) {
+				if (count == offsets.length) offsets = Arrays.copyOf(offsets, 2 * count);
+				offsets[count++] = position;
+				if (skip(input, length - 4) < length - 4) break;
+				position += length;
+				if (read(input, header, 4) < 4) break;
+			} else {
+				// no valid header, resynchronize byte by byte
+				System.arraycopy(header, 1, header, 0, 3);
+				int next = input.read();
+				if (next == -1) break;
+				header[3] = (byte) next;
+				position++;
+			}
+		}
+		if (count == 0) return null;
+		int samplesPerFrame = (layer == 0) ? 384 : (layer == 2 && version != 3) ? 576 : 1152;
+		return new FrameIndex(sampleRate, samplesPerFrame, offsets, count);
+	}
+	
+	private static int read(InputStream input, byte[] buffer, int length) throws IOException {
+		int offset = 0;
+		int n;
+		while (offset < length && (n = input.read(buffer, offset, length - offset)) != -1) {
+			offset += n;
+		}
+		return offset;
+	}
+	
+	private static long skip(InputStream input, long bytes) throws IOException {
+		long skipped = 0;
+		while (skipped < bytes) {
+			long n = input.skip(bytes - skipped);
+			if (n <= 0) {
+				if (input.read() == -1) break;
+				n = 1;
+			}
+			skipped += n;
+		}
+		return skipped;
+	}
+	
+	/**
+	 * Returns the index of the frame containing the given sample.
+	 */
+	int frame(long sample) {
+		return (int) Math.max(0, Math.min(frameCount - 1, sample / samplesPerFrame));
+	}
+	
+	/**
+	 * Returns the index of the first sample of the given frame.
+	 */
+	long sample(int frame) {
+		return (long) frame * samplesPerFrame;
+	}
+	
+	/**
+	 * Returns the byte offset of the given frame in the file.
+	 */
+	long offset(int frame) {
+		return offsets[frame];
+	}
+	
+	int getSampleRate() {
+		return sampleRate;
+	}
+	
+	int getFrameCount() {
+		return frameCount;
+	}
+	
+}
@@ -0,0 +1,84 @@
+package audiodrive.audio;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import audiodrive.utilities.Log;
+import audiodrive.utilities.Stopwatch;
+
+/**
+ * Compares the built-in onset detectors on the given audio files. Each file is analyzed once, then every detector runs over the shared spectrograms of all channels in
+ * parallel. Reports the detected onsets per second of audio and the throughput, so that the detector can be chosen by accuracy and speed on the present hardware.
+ */
+public class OnsetBenchmark {
+	
+	/** Number of runs of each detector before measuring, to let the JIT compile the detection functions. */
+	private static final int WarmUpRuns = 3;
+	/** Number of measured runs of each detector, the fastest of them is reported. */
+	private static final int Runs = 5;
+	
+	private OnsetBenchmark() {
+		throw new IllegalStateException("This class shall not be instantiated.");
+	}
+	
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			Log.error("Usage: OnsetBenchmark <audio file>...");
+			return;
+		}
+		for (String path : args) {
+			AudioAnalyzer analyzer = new AudioAnalyzer()
+				.setCache(false)
+				.setPrecision(Spectrogram.Precision.Float)
+				.setFeatures(Collections.emptySet());
+			AnalyzedAudio audio = analyzer.analyze(new AudioResource(new File(path))).getResults();
+			if (audio == null) {
+				Log.warning("Couldn't analyze \"%s\".", path);
+				continue;
+			}
+			List<AnalyzedChannel> channels = new ArrayList<>(audio.getChannels());
+			channels.add(audio.getMix());
+			Log.info("%s: %.1f seconds, %d channels, %d iterations", path, audio.getDuration(), audio.getChannelCount(), audio.getIterationCount());
+			for (OnsetDetector detector : OnsetDetector.all()) {
+				for (int run = 0; run < WarmUpRuns; run++) {
+					detect(analyzer, detector, channels);
+				}
+				double seconds = Double.POSITIVE_INFINITY;
+				int onsets = 0;
+				for (int run = 0; run < Runs; run++) {
+					Stopwatch stopwatch = new Stopwatch().start();
+					onsets = detect(analyzer, detector, channels);
+					seconds = Math.min(seconds, stopwatch.stop());
+				}
+				long frames = (long) audio.getIterationCount() * channels.size();
+				Log.info(
+					"%-24s %7.2f onsets per second  %12.0f frames per second  %8.1f seconds of audio per second",
+					detector.getName(),
+					onsets / (audio.getDuration() * channels.size()),
+					frames / seconds,
+					audio.getDuration() / seconds);
+			}
+		}
+	}
+	
+	/**
+	 * Calculates detection function, threshold and peaks of all channels in parallel and returns the total number of peaks.
+	 */
+	private static int detect(AudioAnalyzer analyzer, OnsetDetector detector, List<AnalyzedChannel> channels) {
+		return channels.parallelStream().mapToInt(channel -> {
+			float[] values = detector.calculate(channel);
+			int windowSize = Math.round(analyzer.getThresholdWindowSize() * (float) channel.getIteration() / channel.getHop());
+			ChannelAnalyzer.Thresholding thresholding = new ChannelAnalyzer.Thresholding(windowSize, analyzer.getThresholdMultiplier(), analyzer.getThresholdMethod(), values.length);
+			thresholding.finish(values, values.length);
+			AnalyzationData peaks = thresholding.peaks();
+			int count = 0;
+			for (int i = 0; i < peaks.size(); i++) {
+				if (peaks.get(i) > 0) count++;
+			}
+			return count;
+		}).sum();
+	}
+	
+}
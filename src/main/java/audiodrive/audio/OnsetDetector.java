@@ -0,0 +1,253 @@
+package audiodrive.audio;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import audiodrive.utilities.Log;
+
+/**
+ * Calculates an onset detection function from the spectra of a channel. Peaks of the detection function exceeding its adaptive threshold are the detected onsets, which are
+ * provided as the peaks of an {@link AnalyzedChannel}. Detection functions are fed one spectrum after another, so they run while the channel is being analyzed.
+ */
+public interface OnsetDetector {
+	
+	/** Sum of the amplitude increases of all bands. */
+	OnsetDetector SpectralFlux = new SpectralFlux();
+	/** Energy weighted by frequency, emphasizing percussive onsets. */
+	OnsetDetector HighFrequencyContent = new HighFrequencyContent();
+	/** Sum of the amplitude changes of all bands, decreases count as well as increases. */
+	OnsetDetector SpectralDifference = new SpectralDifference();
+	/** Spectral flux of a logarithmically filtered spectrogram, suppressing vibrato. */
+	OnsetDetector SuperFlux = new SuperFlux(96, 1);
+	
+	/**
+	 * Returns the name of the detector.
+	 */
+	String getName();
+	
+	/**
+	 * Creates the detection function of a channel, whose spectra have the given number of bands. The overlap is the number of iterations starting within one iteration.
+	 */
+	Function create(int bandCount, float sampleRate, int overlap);
+	
+	/**
+	 * Calculates the detection function of all iterations of the analyzed channel.
+	 */
+	default float[] calculate(AnalyzedChannel channel) {
+		Spectrogram spectrogram = channel.getSpectrogram();
+		Function function = create(spectrogram.getBandCount(), channel.getSampleRate(), Math.max(1, channel.getIteration() / channel.getHop()));
+		float[] values = new float[spectrogram.getFrameCount()];
+		for (int frame = 0; frame < values.length; frame++) {
+			values[frame] = function.next(spectrogram.row(frame), 0);
+		}
+		return values;
+	}
+	
+	/**
+	 * Returns all built-in detectors.
+	 */
+	static List<OnsetDetector> all() {
+		return Collections.unmodifiableList(Arrays.asList(SpectralFlux, HighFrequencyContent, SpectralDifference, SuperFlux));
+	}
+	
+	/**
+	 * Returns the built-in detector with the given name, ignoring case, or {@link #SpectralFlux} if there is none.
+	 */
+	static OnsetDetector forName(String name) {
+		for (OnsetDetector detector : all()) {
+			if (detector.getName().equalsIgnoreCase(name)) return detector;
+		}
+		Log.warning("Unknown onset detector \"%s\", using %s instead.", name, SpectralFlux.getName());
+		return SpectralFlux;
+	}
+	
+	/**
+	 * Detection function of a single channel, which keeps the state of the previous iterations.
+	 */
+	@FunctionalInterface
+	interface Function {
+		
+		/**
+		 * Returns the detection value of the next iteration, whose spectrum starts at the given offset of the buffer.
+		 */
+		float next(FloatBuffer spectra, int offset);
+		
+	}
+	
+	static class SpectralFlux implements OnsetDetector {
+		
+		@Override
+		public String getName() {
+			return "Spectral Flux";
+		}
+		
+		@Override
+		public Function create(int bandCount, float sampleRate, int overlap) {
+			return new Function() {
+				
+				private final float[] previous = new float[bandCount];
+				private boolean first = true;
+				
+				@Override
+				public float next(FloatBuffer spectra, int offset) {
+					float flux = 0;
+					for (int i = 0; i < bandCount; i++) {
+						float amplitude = spectra.get(offset + i);
+						if (!first) {
+							float value = (amplitude - previous[i]);
+							flux += value < 0 ? 0 : value;
+						}
+						previous[i] = amplitude;
+					}
+					first = false;
+					return flux;
+				}
+				
+			};
+		}
+		
+		@Override
+		public String toString() {
+			return getName();
+		}
+		
+	}
+	
+	static class HighFrequencyContent implements OnsetDetector {
+		
+		@Override
+		public String getName() {
+			return "High Frequency Content";
+		}
+		
+		@Override
+		public Function create(int bandCount, float sampleRate, int overlap) {
+			return (spectra, offset) -> {
+				float content = 0;
+				for (int i = 0; i < bandCount; i++) {
+					float amplitude = spectra.get(offset + i);
+					content += i * amplitude * amplitude;
+				}
+				return content / bandCount;
+			};
+		}
+		
+		@Override
+		public String toString() {
+			return getName();
+		}
+		
+	}
+	
+	/**
+	 * The spectral difference is the L1 distance of the amplitudes to those of the previous iteration, so amplitude decreases count as well as increases, unlike the spectral
+	 * flux. It resembles the complex domain method without phase prediction, which isn't possible since only amplitudes are kept.
+	 */
+	static class SpectralDifference implements OnsetDetector {
+		
+		@Override
+		public String getName() {
+			return "Spectral Difference";
+		}
+		
+		@Override
+		public Function create(int bandCount, float sampleRate, int overlap) {
+			return new Function() {
+				
+				private final float[] previous = new float[bandCount];
+				private boolean first = true;
+				
+				@Override
+				public float next(FloatBuffer spectra, int offset) {
+					float difference = 0;
+					for (int i = 0; i < bandCount; i++) {
+						float amplitude = spectra.get(offset + i);
+						if (!first) difference += Math.abs(amplitude - previous[i]);
+						previous[i] = amplitude;
+					}
+					first = false;
+					return difference;
+				}
+				
+			};
+		}
+		
+		@Override
+		public String toString() {
+			return getName();
+		}
+		
+	}
+	
+	/**
+	 * SuperFlux compares the logarithmic amplitudes of logarithmically spaced bands with the maximum of the neighboring bands a few iterations earlier, so that vibrato and
+	 * slowly rising notes don't cause onsets.
+	 */
+	static class SuperFlux implements OnsetDetector {
+		
+		private final int bands;
+		private final float compression;
+		
+		/**
+		 * Creates the detector with the given number of logarithmically spaced bands and logarithmic compression factor.
+		 */
+		public SuperFlux(int bands, float compression) {
+			this.bands = bands;
+			this.compression = compression;
+		}
+		
+		@Override
+		public String getName() {
+			return "SuperFlux";
+		}
+		
+		@Override
+		public Function create(int bandCount, float sampleRate, int overlap) {
+			BandAggregation aggregation = new BandAggregation(BandAggregation.Scale.Logarithmic, bands, bandCount, sampleRate);
+			int count = aggregation.getCount();
+			// compare with the iteration which starts about half an iteration earlier
+			int lag = Math.max(1, overlap / 2);
+			return new Function() {
+				
+				/** Logarithmic amplitudes of the last iterations, maximum filtered over neighboring bands. */
+				private final float[][] history = new float[lag][count];
+				private final float[] current = new float[count];
+				private int iterations;
+				
+				@Override
+				public float next(FloatBuffer spectra, int offset) {
+					aggregation.aggregate(spectra, offset, current, 0);
+					for (int i = 0; i < count; i++) {
+						current[i] = (float) Math.log10(1 + compression * current[i]);
+					}
+					float[] reference = history[iterations % lag];
+					float flux = 0;
+					if (iterations >= lag) {
+						for (int i = 0; i < count; i++) {
+							float value = current[i] - reference[i];
+							flux += value < 0 ? 0 : value;
+						}
+					}
+					for (int i = 0; i < count; i++) {
+						float maximum = current[i];
+						if (i > 0 && current[i - 1] > maximum) maximum = current[i - 1];
+						if (i < count - 1 && current[i + 1] > maximum) maximum = current[i + 1];
+						reference[i] = maximum;
+					}
+					iterations++;
+					return flux;
+				}
+				
+			};
+		}
+		
+		@Override
+		public String toString() {
+			return getName();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,73 @@
+package audiodrive.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+
+/**
+ * Reads decoded samples as interleaved 16 bit little endian PCM, the format the decoder produces. The samples are read directly from memory or their memory-mapped files,
+ * so no decoding is necessary.
+ */
+class PcmInputStream extends InputStream {
+	
+	private final FloatBuffer[] channels;
+	private final int sampleCount;
+	private final int frameSize;
+	private int position;
+	
+	/**
+	 * Creates a stream starting at the given sample.
+	 */
+	PcmInputStream(DecodedAudio audio, int start) {
+		channels = new FloatBuffer[audio.getChannelCount()];
+		for (int channel = 0; channel < channels.length; channel++) {
+			channels[channel] = audio.getChannel(channel).getSamples();
+		}
+		sampleCount = audio.getSampleCount();
+		frameSize = channels.length * 2;
+		position = start;
+	}
+	
+	/**
+	 * Single bytes can't be read, since a frame consists of several bytes.
+	 */
+	@Override
+	public int read() throws IOException {
+		throw new IOException("Cannot read a single byte if the frame size is " + frameSize);
+	}
+	
+	/**
+	 * Reads whole frames only, so the length is rounded down to a multiple of the frame size and has to be at least one frame.
+	 */
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) return 0;
+		if (length < frameSize) throw new IOException("Cannot read " + length + " bytes if the frame size is " + frameSize);
+		if (position >= sampleCount) return -1;
+		int frames = Math.min(length / frameSize, sampleCount - position);
+		for (int frame = 0; frame < frames; frame++) {
+			for (FloatBuffer channel : channels) {
+				int value = Math.round(channel.get(position) * 32768f);
+				if (value > Short.MAX_VALUE) value = Short.MAX_VALUE;
+				else if (value < Short.MIN_VALUE) value = Short.MIN_VALUE;
+				buffer[offset++] = (byte) value;
+				buffer[offset++] = (byte) (value >> 8);
+			}
+			position++;
+		}
+		return frames * frameSize;
+	}
+	
+	@Override
+	public long skip(long bytes) {
+		long frames = Math.max(0, Math.min(bytes / frameSize, sampleCount - position));
+		position += frames;
+		return frames * frameSize;
+	}
+	
+	@Override
+	public int available() {
+		return (int) Math.min(Integer.MAX_VALUE, (long) (sampleCount - position) * frameSize);
+	}
+	
+}
@@ -1,7 +1,9 @@
 package audiodrive.audio;
 
 import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
 
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.BooleanControl;
@@ -9,18 +11,34 @@ import javax.sound.sampled.FloatControl;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.SourceDataLine;
 
+/**
+ * Plays audio on its own thread. The audio is read ahead into a ring buffer by a feeder thread, either from the decoder or directly from decoded samples, so that the thread
+ * writing to the audio line never waits for the decoder.
+ */
 public class Playback {
 	
+	/** Duration of audio buffered ahead of the line in seconds, which absorbs hiccups of the decoder. */
+	private static final double BufferDuration = 0.5;
+	/** Number of frames written onto the line at once. */
+	private static final int ChunkFrames = 1024;
+	/** Nanoseconds the threads wait while the ring buffer is full or empty. */
+	private static final long IdleNanos = 2000000;
+	
 	private AudioResource resource;
+	private DecodedAudio audio;
 	private Thread thread;
-	private AudioInputStream stream;
+	private RingBuffer ring;
 	private SourceDataLine line;
 	private byte[] buffer;
+	private int frameSize;
+	private volatile Clock clock;
 	
 	private volatile boolean pause = false;
 	private volatile boolean restart = false;
 	private volatile boolean stop = true;
 	private volatile boolean loop = false;
+	/** Pending seek target in seconds, or NaN. */
+	private volatile double seek = Double.NaN;
 	
 	private double volume = 1.0;
 	private boolean mute = false;
@@ -29,6 +47,14 @@ public class Playback {
 		this.resource = resource;
 	}
 	
+	/**
+	 * Creates a playback of decoded audio, which streams the decoded samples instead of decoding the file again.
+	 */
+	public Playback(DecodedAudio audio) {
+		this.resource = audio.getResource();
+		this.audio = audio;
+	}
+	
 	/** Starts or restarts the playback. Also opens the necessary resources. */
 	public Playback start() {
 		initialize();
@@ -82,6 +108,19 @@ public class Playback {
 		return this;
 	}
 	
+	/**
+	 * Continues the playback at the given time in seconds. Decoded audio is positioned instantly, MPEG files start decoding at the nearest frame. If the playback is
+	 * stopped, it starts at the given time the next time it's started.
+	 */
+	public Playback seek(double seconds) {
+		seek = Math.max(0, seconds);
+		SourceDataLine line = this.line;
+		Clock clock = this.clock;
+		// a running playback repositions on its own thread, a paused one shows the new time right away
+		if (isPaused() && line != null && clock != null) clock.seek(seek, line.getLongFramePosition());
+		return this;
+	}
+	
 	/** Empty callback function, called when playback has ended. */
 	public void ended() {}
 	
@@ -170,9 +209,15 @@ public class Playback {
 		return resource;
 	}
 	
+	/**
+	 * Returns the playback time in seconds. It is interpolated between the coarse position updates of the audio line, so that it advances smoothly with sub-millisecond
+	 * resolution, and never decreases until the playback restarts or seeks.
+	 */
 	public double getTime() {
-		if (line == null) return 0.0;
-		return line.getMicrosecondPosition() / 1000000.0;
+		SourceDataLine line = this.line;
+		Clock clock = this.clock;
+		if (line == null || clock == null) return 0.0;
+		return clock.time(line.getLongFramePosition(), isRunning());
 	}
 	
 	private boolean initialized() {
@@ -182,8 +227,8 @@ public class Playback {
 	/**
 	 * Creates a new thread to play the audio file. <br>
 	 * <br>
-	 * The thread opens the resources using {@link #open()}, plays the audio using {@link #play()} and finally closes the resources using {@link #close()}. If the playback is
-	 * paused, the thread stops the audio line and waits until the playback resumes.
+	 * The resources are opened using {@link #open()}, then the thread plays the audio using {@link #play()} and finally closes the resources using {@link #close()}. If the
+	 * playback is paused, the thread stops the audio line and waits until the playback resumes.
 	 */
 	private void initialize() {
 		if (initialized()) return;
@@ -206,6 +251,7 @@ public class Playback {
 							throw new RuntimeException(exception);
 						}
 					}
+					if (!Double.isNaN(seek)) reposition();
 					if (!play()) break;
 				}
 				if (!stop) line.drain();
@@ -214,46 +260,101 @@ public class Playback {
 			};
 		};
 		thread.setName("Playback Thread");
+		thread.setPriority(Thread.MAX_PRIORITY);
 	}
 	
 	private void open() {
-		if (stream != null) close();
+		if (ring != null) close();
+		double start = Double.isNaN(seek) ? 0 : seek;
+		seek = Double.NaN;
+		AudioInputStream stream = stream(start);
+		AudioFormat format = stream.getFormat();
 		try {
-			stream = resource.open();
-			line = AudioSystem.getSourceDataLine(stream.getFormat());
-			buffer = new byte[1024 * stream.getFormat().getFrameSize()];
+			line = AudioSystem.getSourceDataLine(format);
 			line.open();
 		} catch (LineUnavailableException exception) {
+			try {
+				stream.close();
+			} catch (IOException closing) {}
 			throw new RuntimeException(exception);
 		}
+		frameSize = format.getFrameSize();
+		buffer = new byte[ChunkFrames * frameSize];
+		ring = new RingBuffer((int) (BufferDuration * format.getFrameRate()) * frameSize);
+		clock = new Clock(format.getFrameRate(), start);
+		feed(stream, ring, buffer.length);
+	}
+	
+	/**
+	 * Opens a stream starting at the given time in seconds.
+	 */
+	private AudioInputStream stream(double seconds) {
+		if (audio != null) return audio.open((long) (seconds * audio.getSampleRate()));
+		return resource.open(seconds);
+	}
+	
+	/**
+	 * Discards the buffered audio and continues with a new feeder at the pending seek target.
+	 */
+	private void reposition() {
+		double seconds = seek;
+		seek = Double.NaN;
+		ring.close();
+		line.flush();
+		ring = new RingBuffer((int) (BufferDuration * line.getFormat().getFrameRate()) * frameSize);
+		feed(stream(seconds), ring, buffer.length);
+		clock.seek(seconds, line.getLongFramePosition());
+	}
+	
+	/**
+	 * Starts a thread which reads the stream into the ring buffer ahead of the playback, until the stream ends or the ring buffer is closed. The thread closes the stream.
+	 */
+	private static void feed(AudioInputStream stream, RingBuffer ring, int chunkSize) {
+		Thread feeder = new Thread(() -> {
+			byte[] chunk = new byte[chunkSize];
+			try (AudioInputStream input = stream) {
+				int n;
+				while (!ring.isClosed() && (n = input.read(chunk, 0, chunk.length)) != -1) {
+					int offset = 0;
+					while (!ring.isClosed()) {
+						offset += ring.write(chunk, offset, n - offset);
+						if (offset == n) break;
+						LockSupport.parkNanos(IdleNanos);
+					}
+				}
+			} catch (IOException exception) {
+				throw new RuntimeException(exception);
+			} finally {
+				ring.finish();
+			}
+		});
+		feeder.setName("Playback Feeder Thread");
+		feeder.setDaemon(true);
+		feeder.start();
 	}
 	
 	/**
-	 * Reads data from the audio input stream and writes them onto the audio line where it is consumed by the Java Sound API.
+	 * Reads whole frames from the ring buffer and writes them onto the audio line where it is consumed by the Java Sound API. Waits briefly if the feeder falls behind.
 	 */
 	private boolean play() {
-		int n;
-		try {
-			n = stream.read(buffer, 0, buffer.length);
-		} catch (IOException exception) {
-			throw new RuntimeException(exception);
+		int available = ring.available();
+		int n = ring.read(buffer, 0, Math.min(buffer.length, available - available % frameSize));
+		if (n == 0) {
+			if (ring.isDrained()) return false;
+			LockSupport.parkNanos(IdleNanos);
+			return true;
 		}
-		if (n == -1) return false;
 		line.write(buffer, 0, n);
 		return true;
 	}
 	
 	private void close() {
-		if (stream == null) return;
-		try {
-			stream.close();
-		} catch (IOException exception) {
-			throw new RuntimeException(exception);
-		}
+		if (ring == null) return;
+		ring.close();
 		line.stop();
 		line.close();
 		restart = (restart || loop) && !stop;
-		stream = null;
+		ring = null;
 		buffer = null;
 		line = null;
 		thread = null;
@@ -264,4 +365,51 @@ public class Playback {
 		}
 	}
 	
+	/**
+	 * Playback time interpolated with the system timer. The frame position of the line only advances in coarse steps and is observed with a delay, so the clock runs on
+	 * the system timer and is slewed towards the observed position, unless it deviates too much, e.g. after an underrun. Seeking moves the origin, which maps the line
+	 * position to the playback time.
+	 */
+	private static class Clock {
+		
+		/** Deviation from the observed position in seconds, above which the clock jumps to it. */
+		private static final double Tolerance = 0.05;
+		/** Fraction of the deviation corrected on each update. */
+		private static final double Slew = 0.05;
+		
+		private final double frameRate;
+		private double estimate;
+		private double time;
+		private long nanos;
+		/** Playback time and line position at the last seek. */
+		private double origin;
+		private long originPosition;
+		
+		private Clock(double frameRate, double origin) {
+			this.frameRate = frameRate;
+			seek(origin, 0);
+		}
+		
+		private synchronized void seek(double seconds, long position) {
+			origin = seconds;
+			originPosition = position;
+			estimate = seconds;
+			time = seconds;
+			nanos = System.nanoTime();
+		}
+		
+		private synchronized double time(long position, boolean running) {
+			long now = System.nanoTime();
+			if (running) estimate += (now - nanos) * 1e-9;
+			nanos = now;
+			double deviation = origin + (position - originPosition) / frameRate - estimate;
+			if (Math.abs(deviation) > Tolerance) estimate += deviation;
+			else estimate += deviation * Slew;
+			// the time never decreases between seeks, it waits for the line instead
+			if (estimate > time) time = estimate;
+			return time;
+		}
+		
+	}
+	
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package audiodrive.audio;
+
+/**
+ * Lock-free ring buffer of bytes for a single producer and a single consumer thread. Each side only advances its own position, which is published through a volatile write
+ * after the bytes have been copied, so neither side ever blocks the other.
+ */
+class RingBuffer {
+	
+	private final byte[] bytes;
+	private final int mask;
+	
+	/** Total number of bytes read and written, only advanced by the consumer and producer respectively. */
+	private volatile long read;
+	private volatile long written;
+	private volatile boolean finished;
+	private volatile boolean closed;
+	
+	/**
+	 * Creates a ring buffer holding at least the given number of bytes, rounded up to a power of two.
+	 */
+	RingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		bytes = new byte[size];
+		mask = size - 1;
+	}
+	
+	/**
+	 * Writes as many bytes as fit into the buffer and returns their number. Must only be called by the producer.
+	 */
+	int write(byte[] source, int offset, int length) {
+		long position = written;
+		int count = (int) Math.min(length, bytes.length - (position - read));
+		int index = (int) (position & mask);
+		int first = Math.min(count, bytes.length - index);
+		System.arraycopy(source, offset, bytes, index, first);
+		System.arraycopy(source, offset + first, bytes, 0, count - first);
+		written = position + count;
+		return count;
+	}
+	
+	/**
+	 * Reads as many bytes as are available, up to the given length, and returns their number. Must only be called by the consumer.
+	 */
+	int read(byte[] target, int offset, int length) {
+		long position = read;
+		int count = (int) Math.min(length, written - position);
+		int index = (int) (position & mask);
+		int first = Math.min(count, bytes.length - index);
+		System.arraycopy(bytes, index, target, offset, first);
+		System.arraycopy(bytes, 0, target, offset + first, count - first);
+		read = position + count;
+		return count;
+	}
+	
+	/**
+	 * Returns the number of bytes which can be read.
+	 */
+	int available() {
+		return (int) (written - read);
+	}
+	
+	/**
+	 * Marks that the producer won't write any more bytes.
+	 */
+	void finish() {
+		finished = true;
+	}
+	
+	/**
+	 * Indicates that the producer has finished and all bytes have been read.
+	 */
+	boolean isDrained() {
+		return finished && available() == 0;
+	}
+	
+	/**
+	 * Signals the producer to stop writing.
+	 */
+	void close() {
+		closed = true;
+	}
+	
+	boolean isClosed() {
+		return closed;
+	}
+	
+}
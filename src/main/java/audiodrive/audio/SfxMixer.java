@@ -0,0 +1,242 @@
+package audiodrive.audio;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+import audiodrive.utilities.Log;
+
+/**
+ * Mixes short sound effects into a single audio line, which stays open on one thread. Effects are decoded once when they are loaded. Playing an effect only enqueues a
+ * trigger without allocating anything, the mixer thread then starts a voice for it. If all voices are busy, the voice which is closest to its end is stolen.
+ */
+public class SfxMixer {
+	
+	/** Mixer shared by the whole application. */
+	public static final SfxMixer Default = new SfxMixer();
+	
+	private static final float SampleRate = 44100;
+	private static final int Channels = 2;
+	/** Number of frames mixed at once, the line buffers two chunks. */
+	private static final int ChunkFrames = 512;
+	private static final int MaximumVoices = 16;
+	/** Maximum number of pending triggers, must be a power of two. */
+	private static final int QueueCapacity = 64;
+	
+	private final Map<AudioResource, Effect> effects = new HashMap<>();
+	private volatile Effect[] registered = new Effect[0];
+	
+	/** Pending triggers, each the effect index in the upper and the volume bits in the lower half. */
+	private final long[] triggers = new long[QueueCapacity];
+	/** Sequence numbers of the trigger slots, which tell producers and the consumer whether a slot is free or filled. */
+	private final AtomicLongArray sequences = new AtomicLongArray(QueueCapacity);
+	private final AtomicLong tail = new AtomicLong();
+	private long head;
+	
+	private final Effect[] voices = new Effect[MaximumVoices];
+	private final int[] positions = new int[MaximumVoices];
+	private final float[] volumes = new float[MaximumVoices];
+	
+	private Thread thread;
+	private volatile boolean closed;
+	
+	private SfxMixer() {
+		for (int slot = 0; slot < QueueCapacity; slot++) {
+			sequences.set(slot, slot);
+		}
+	}
+	
+	/**
+	 * Loads the sound effect, decoding it into samples of the mixer format. Effects are loaded once, loading the same resource again returns the same effect.
+	 */
+	public synchronized Effect load(AudioResource resource) {
+		Effect effect = effects.get(resource);
+		if (effect != null) return effect;
+		effect = new Effect(registered.length, samples(AudioDecoder.decode(resource)));
+		effects.put(resource, effect);
+		Effect[] registered = new Effect[this.registered.length + 1];
+		System.arraycopy(this.registered, 0, registered, 0, effect.index);
+		registered[effect.index] = effect;
+		this.registered = registered;
+		return effect;
+	}
+	
+	/**
+	 * Converts the decoded audio into interleaved stereo samples at the mixer sample rate, resampling it linearly if necessary.
+	 */
+	private static float[] samples(DecodedAudio audio) {
+		double step = audio.getSampleRate() / SampleRate;
+		int frames = (int) (audio.getSampleCount() / step);
+		float[] samples = new float[frames * Channels];
+		FloatBuffer left = audio.getChannel(0).getSamples();
+		FloatBuffer right = audio.getChannel(Math.min(1, audio.getChannelCount() - 1)).getSamples();
+		for (int frame = 0; frame < frames; frame++) {
+			double position = frame * step;
+			int index = (int) position;
+			int next = Math.min(index + 1, audio.getSampleCount() - 1);
+			float fraction = (float) (position - index);
+			samples[frame * Channels] = left.get(index) * (1 - fraction) + left.get(next) * fraction;
+			samples[frame * Channels + 1] = right.get(index) * (1 - fraction) + right.get(next) * fraction;
+		}
+		return samples;
+	}
+	
+	/**
+	 * Plays the effect with the given volume in the range [0, 2]. Returns <code>false</code> if too many triggers are pending, in which case the effect is dropped. Starts
+	 * the mixer thread on first use.
+	 */
+	public boolean play(Effect effect, double volume) {
+		if (thread == null) start();
+		long position;
+		while (true) {
+			position = tail.get();
+			long difference = sequences.get(slot(position)) - position;
+			if (difference < 0) return false;
+			if (difference == 0 && tail.compareAndSet(position, position + 1)) break;
+		}
+		float gain = (float) Math.max(0, Math.min(2, volume));
+		triggers[slot(position)] = ((long) effect.index << 32) | (Float.floatToRawIntBits(gain) & 0xFFFFFFFFL);
+		sequences.set(slot(position), position + 1);
+		return true;
+	}
+	
+	private static int slot(long position) {
+		return (int) (position & (QueueCapacity - 1));
+	}
+	
+	private synchronized void start() {
+		if (thread != null) return;
+		thread = new Thread(this::run);
+		thread.setName("Sound Effect Thread");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+	
+	/**
+	 * Stops the mixer thread and closes the audio line.
+	 */
+	public void close() {
+		closed = true;
+	}
+	
+	private void run() {
+		AudioFormat format = new AudioFormat(SampleRate, 16, Channels, true, false);
+		SourceDataLine line;
+		try {
+			line = AudioSystem.getSourceDataLine(format);
+			line.open(format, 2 * ChunkFrames * format.getFrameSize());
+		} catch (LineUnavailableException | IllegalArgumentException exception) {
+			Log.warning("Couldn't open audio line for sound effects.", exception);
+			return;
+		}
+		float[] mix = new float[ChunkFrames * Channels];
+		byte[] bytes = new byte[ChunkFrames * format.getFrameSize()];
+		line.start();
+		while (!closed) {
+			dequeue();
+			mix(mix);
+			for (int i = 0; i < mix.length; i++) {
+				int value = Math.round(mix[i] * 32767f);
+				if (value > Short.MAX_VALUE) value = Short.MAX_VALUE;
+				else if (value < Short.MIN_VALUE) value = Short.MIN_VALUE;
+				bytes[2 * i] = (byte) value;
+				bytes[2 * i + 1] = (byte) (value >> 8);
+			}
+			// blocks until the line has room for the chunk, which paces the mixer
+			line.write(bytes, 0, bytes.length);
+		}
+		line.stop();
+		line.close();
+	}
+	
+	/**
+	 * Starts a voice for each pending trigger.
+	 */
+	private void dequeue() {
+		Effect[] registered = this.registered;
+		while (sequences.get(slot(head)) == head + 1) {
+			long trigger = triggers[slot(head)];
+			sequences.set(slot(head), head + QueueCapacity);
+			head++;
+			int voice = voice();
+			voices[voice] = registered[(int) (trigger >>> 32)];
+			positions[voice] = 0;
+			volumes[voice] = Float.intBitsToFloat((int) trigger);
+		}
+	}
+	
+	/**
+	 * Returns a free voice, or steals the one closest to its end.
+	 */
+	private int voice() {
+		int stolen = 0;
+		int remaining = Integer.MAX_VALUE;
+		for (int voice = 0; voice < MaximumVoices; voice++) {
+			if (voices[voice] == null) return voice;
+			int left = voices[voice].samples.length - positions[voice];
+			if (left < remaining) {
+				remaining = left;
+				stolen = voice;
+			}
+		}
+		return stolen;
+	}
+	
+	/**
+	 * Mixes the next chunk of all active voices.
+	 */
+	private void mix(float[] mix) {
+		Arrays.fill(mix, 0);
+		for (int voice = 0; voice < MaximumVoices; voice++) {
+			Effect effect = voices[voice];
+			if (effect == null) continue;
+			int position = positions[voice];
+			int length = Math.min(mix.length, effect.samples.length - position);
+			float volume = volumes[voice];
+			for (int i = 0; i < length; i++) {
+				mix[i] += effect.samples[position + i] * volume;
+			}
+			positions[voice] = position + length;
+			if (positions[voice] == effect.samples.length) voices[voice] = null;
+		}
+	}
+	
+	/**
+	 * Sound effect decoded into interleaved stereo samples.
+	 */
+	public static class Effect {
+		
+		private final int index;
+		private final float[] samples;
+		
+		private Effect(int index, float[] samples) {
+			this.index = index;
+			this.samples = samples;
+		}
+		
+		/**
+		 * Plays the effect on the default mixer with the given volume in the range [0, 2].
+		 */
+		public boolean play(double volume) {
+			return Default.play(this, volume);
+		}
+		
+		/**
+		 * Returns the duration in seconds.
+		 */
+		public double getDuration() {
+			return samples.length / Channels / SampleRate;
+		}
+		
+	}
+	
+}
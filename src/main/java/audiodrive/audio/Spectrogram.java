@@ -0,0 +1,406 @@
+package audiodrive.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import audiodrive.utilities.Log;
+
+/**
+ * Spectra of all iterations of a channel, stored frame by frame in a single contiguous buffer. Rows (the spectrum of an iteration) and columns (a frequency band over all
+ * iterations) are provided as views without copying any data. A {@linkplain #compact(Precision) compact} copy trades precision for a smaller memory footprint.
+ */
+public class Spectrogram {
+	
+	private final FloatBuffer data;
+	private final int frameCount;
+	private final int bandCount;
+	private final float[] minimums;
+	private final float[] maximums;
+	private final List<AnalyzationData> bands;
+	
+	/**
+	 * Creates a spectrogram from the buffer containing <code>frameCount * bandCount</code> values starting at its current position, together with the minimum and maximum of
+	 * each band.
+	 */
+	Spectrogram(FloatBuffer data, int frameCount, int bandCount, float[] minimums, float[] maximums) {
+		this.data = data.slice();
+		this.frameCount = frameCount;
+		this.bandCount = bandCount;
+		this.minimums = minimums;
+		this.maximums = maximums;
+		Column[] columns = new Column[bandCount];
+		for (int band = 0; band < bandCount; band++) {
+			columns[band] = new Column(band, minimums[band], maximums[band]);
+		}
+		bands = Collections.unmodifiableList(Arrays.asList(columns));
+	}
+	
+	/**
+	 * Creates an empty spectrogram with the given dimensions and band statistics, used by compact representations.
+	 */
+	private Spectrogram(int frameCount, int bandCount, float[] minimums, float[] maximums) {
+		this(FloatBuffer.allocate(0), frameCount, bandCount, minimums, maximums);
+	}
+	
+	/**
+	 * Creates a spectrogram of the given precision, which reads the values written by {@link #write(int, Precision, ByteBuffer)} directly from the buffer, starting at its
+	 * current position.
+	 */
+	static Spectrogram read(ByteBuffer buffer, Precision precision, int frameCount, int bandCount, float[] minimums, float[] maximums) {
+		int count = frameCount * bandCount;
+		switch (precision) {
+		case Half:
+			return new Half((ShortBuffer) buffer.asShortBuffer().limit(count), frameCount, bandCount, minimums, maximums);
+		case Byte:
+			return new Quantized((ByteBuffer) buffer.slice().limit(count), frameCount, bandCount, minimums, maximums);
+		default:
+			return new Spectrogram((FloatBuffer) buffer.asFloatBuffer().limit(count), frameCount, bandCount, minimums, maximums);
+		}
+	}
+	
+	/**
+	 * Writes the values of the given iteration with the given precision into the buffer, which need {@link Precision#getBytes()} bytes each. Values are converted like by
+	 * {@link #compact(Precision)}, unless the spectrogram already has that precision.
+	 */
+	void write(int frame, Precision precision, ByteBuffer buffer) {
+		for (int band = 0; band < bandCount; band++) {
+			float value = get(frame, band);
+			switch (precision) {
+			case Half:
+				buffer.putShort(Half.toHalf(value));
+				break;
+			case Byte:
+				buffer.put(Quantized.quantize(value, Math.max(0, maximums[band])));
+				break;
+			default:
+				buffer.putFloat(value);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the amplitude of a band at the given iteration.
+	 */
+	public float get(int frame, int band) {
+		return data.get(frame * bandCount + band);
+	}
+	
+	/**
+	 * Returns a read-only view of the spectrum of the given iteration. Compact spectrograms return a decoded copy instead.
+	 */
+	public FloatBuffer row(int frame) {
+		if (frame < 0 || frame >= frameCount) throw new IndexOutOfBoundsException("Frame " + frame + " out of range [0, " + frameCount + ").");
+		FloatBuffer row = data.asReadOnlyBuffer();
+		row.position(frame * bandCount).limit((frame + 1) * bandCount);
+		return row.slice();
+	}
+	
+	/**
+	 * Decodes the spectrum of the given iteration into the row of a compact spectrogram.
+	 */
+	private FloatBuffer decode(int frame) {
+		if (frame < 0 || frame >= frameCount) throw new IndexOutOfBoundsException("Frame " + frame + " out of range [0, " + frameCount + ").");
+		float[] row = new float[bandCount];
+		for (int band = 0; band < bandCount; band++) {
+			row[band] = get(frame, band);
+		}
+		return FloatBuffer.wrap(row).asReadOnlyBuffer();
+	}
+	
+	/**
+	 * Returns a copy of this spectrogram stored with the given precision, or this spectrogram if it already has that precision. Band minimums and maximums are kept from the
+	 * original values.
+	 */
+	public Spectrogram compact(Precision precision) {
+		if (precision == getPrecision()) return this;
+		switch (precision) {
+		case Half:
+			return new Half(this);
+		case Byte:
+			return new Quantized(this);
+		default:
+			return new Spectrogram(FloatBuffer.wrap(toArray()), frameCount, bandCount, minimums, maximums);
+		}
+	}
+	
+	private float[] toArray() {
+		float[] values = new float[frameCount * bandCount];
+		for (int frame = 0; frame < frameCount; frame++) {
+			for (int band = 0; band < bandCount; band++) {
+				values[frame * bandCount + band] = get(frame, band);
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Indicates the precision the amplitudes are stored with.
+	 */
+	public Precision getPrecision() {
+		return Precision.Float;
+	}
+	
+	/**
+	 * Returns a view of the amplitudes of the given band over all iterations.
+	 */
+	public AnalyzationData column(int band) {
+		return bands.get(band);
+	}
+	
+	/**
+	 * Returns views of all bands.
+	 */
+	public List<AnalyzationData> columns() {
+		return bands;
+	}
+	
+	/**
+	 * Indicates the number of iterations.
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * Indicates the number of frequency bands of each spectrum.
+	 */
+	public int getBandCount() {
+		return bandCount;
+	}
+	
+	/**
+	 * Precision of the stored amplitudes.
+	 */
+	public static enum Precision {
+		/** 32 bit floating point values. */
+		Float(4),
+		/** 16 bit floating point values, with a relative error below 0.05%. */
+		Half(2),
+		/** 8 bit values on a logarithmic scale relative to the maximum of each band, with a dynamic range of about 48 dB. */
+		Byte(1);
+		
+		private final int bytes;
+		
+		private Precision(int bytes) {
+			this.bytes = bytes;
+		}
+		
+		/**
+		 * Returns the number of bytes of each stored value.
+		 */
+		public int getBytes() {
+			return bytes;
+		}
+		
+		/**
+		 * Returns the precision with the given name, ignoring case, or {@link #Float} if there is none.
+		 */
+		public static Precision forName(String name) {
+			for (Precision precision : values()) {
+				if (precision.name().equalsIgnoreCase(name)) return precision;
+			}
+			Log.warning("Unknown spectrogram precision \"%s\", using %s instead.", name, Float);
+			return Float;
+		}
+	}
+	
+	/**
+	 * Spectrogram storing 16 bit floating point values, which are decoded through a lookup table.
+	 */
+	private static class Half extends Spectrogram {
+		
+		/** Float value of each 16 bit pattern. */
+		private static final float[] Table = new float[1 << 16];
+		
+		static {
+			for (int i = 0; i < Table.length; i++) {
+				Table[i] = toFloat(i);
+			}
+		}
+		
+		private final ShortBuffer values;
+		private final int bandCount;
+		
+		private Half(Spectrogram spectrogram) {
+			this(ShortBuffer.allocate(spectrogram.frameCount * spectrogram.bandCount), spectrogram.frameCount, spectrogram.bandCount, spectrogram.minimums, spectrogram.maximums);
+			for (int frame = 0; frame < spectrogram.frameCount; frame++) {
+				for (int band = 0; band < bandCount; band++) {
+					values.put(frame * bandCount + band, toHalf(spectrogram.get(frame, band)));
+				}
+			}
+		}
+		
+		private Half(ShortBuffer values, int frameCount, int bandCount, float[] minimums, float[] maximums) {
+			super(frameCount, bandCount, minimums, maximums);
+			this.values = values.slice();
+			this.bandCount = bandCount;
+		}
+		
+		@Override
+		public float get(int frame, int band) {
+			return Table[values.get(frame * bandCount + band) & 0xFFFF];
+		}
+		
+		@Override
+		void write(int frame, Precision precision, ByteBuffer buffer) {
+			if (precision != Precision.Half) {
+				super.write(frame, precision, buffer);
+				return;
+			}
+			for (int band = 0; band < bandCount; band++) {
+				buffer.putShort(values.get(frame * bandCount + band));
+			}
+		}
+		
+		@Override
+		public FloatBuffer row(int frame) {
+			return super.decode(frame);
+		}
+		
+		@Override
+		public Precision getPrecision() {
+			return Precision.Half;
+		}
+		
+		/**
+		 * Converts a float to the nearest 16 bit floating point value, rounding ties to even.
+		 */
+		private static short toHalf(float value) {
+			int bits = Float.floatToIntBits(value);
+			int sign = (bits >>> 16) & 0x8000;
+			int magnitude = bits & 0x7FFFFFFF;
+			// NaN, or too large to be represented
+			if (magnitude > 0x7F800000) return (short) (sign | 0x7E00);
+			if (magnitude >= 0x47800000) return (short) (sign | 0x7C00);
+			// normal, the rounding may carry into the exponent up to infinity
+			if (magnitude >= 0x38800000) return (short) (sign | ((magnitude - 0x38000000 + 0x0FFF + ((magnitude >>> 13) & 1)) >>> 13));
+			// subnormal or zero
+			if (magnitude < 0x33000000) return (short) sign;
+			int shift = 126 - (magnitude >>> 23);
+			int mantissa = (magnitude & 0x7FFFFF) | 0x800000;
+			int half = mantissa >>> shift;
+			int remainder = mantissa & ((1 << shift) - 1);
+			int halfway = 1 << (shift - 1);
+			if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) half++;
+			return (short) (sign | half);
+		}
+		
+		private static float toFloat(int half) {
+			int sign = (half & 0x8000) << 16;
+			int exponent = (half >>> 10) & 0x1F;
+			int mantissa = half & 0x3FF;
+			if (exponent == 0) return Float.intBitsToFloat(sign | Float.floatToIntBits(mantissa * 0x1p-24f));
+			if (exponent == 31) return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+			return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+		}
+		
+	}
+	
+	/**
+	 * Spectrogram storing 8 bit values on a logarithmic scale relative to the maximum of each band, using the mu-law curve. Values are decoded by scaling an entry of a
+	 * lookup table.
+	 */
+	private static class Quantized extends Spectrogram {
+		
+		private static final double Mu = 255;
+		private static final double Logarithm = Math.log1p(Mu);
+		/** Value relative to the band maximum of each 8 bit level. */
+		private static final float[] Table = new float[256];
+		
+		static {
+			for (int i = 0; i < Table.length; i++) {
+				Table[i] = (float) ((Math.pow(1 + Mu, i / 255.0) - 1) / Mu);
+			}
+		}
+		
+		private final ByteBuffer values;
+		private final float[] scales;
+		private final int bandCount;
+		
+		private Quantized(Spectrogram spectrogram) {
+			this(ByteBuffer.allocate(spectrogram.frameCount * spectrogram.bandCount), spectrogram.frameCount, spectrogram.bandCount, spectrogram.minimums, spectrogram.maximums);
+			for (int frame = 0; frame < spectrogram.frameCount; frame++) {
+				for (int band = 0; band < bandCount; band++) {
+					values.put(frame * bandCount + band, quantize(spectrogram.get(frame, band), scales[band]));
+				}
+			}
+		}
+		
+		/**
+		 * Creates a spectrogram of the given values, scaled by the maximum of their band.
+		 */
+		private Quantized(ByteBuffer values, int frameCount, int bandCount, float[] minimums, float[] maximums) {
+			super(frameCount, bandCount, minimums, maximums);
+			this.values = values.slice();
+			this.bandCount = bandCount;
+			scales = new float[bandCount];
+			for (int band = 0; band < bandCount; band++) {
+				scales[band] = Math.max(0, maximums[band]);
+			}
+		}
+		
+		@Override
+		public float get(int frame, int band) {
+			return Table[values.get(frame * bandCount + band) & 0xFF] * scales[band];
+		}
+		
+		@Override
+		void write(int frame, Precision precision, ByteBuffer buffer) {
+			if (precision != Precision.Byte) {
+				super.write(frame, precision, buffer);
+				return;
+			}
+			for (int band = 0; band < bandCount; band++) {
+				buffer.put(values.get(frame * bandCount + band));
+			}
+		}
+		
+		/**
+		 * Returns the level of the value relative to the given band maximum.
+		 */
+		private static byte quantize(float value, float scale) {
+			double relative = (scale > 0) ? Math.min(1, Math.max(0, value / scale)) : 0;
+			return (byte) Math.round(255 * Math.log1p(Mu * relative) / Logarithm);
+		}
+		
+		@Override
+		public FloatBuffer row(int frame) {
+			return super.decode(frame);
+		}
+		
+		@Override
+		public Precision getPrecision() {
+			return Precision.Byte;
+		}
+		
+	}
+	
+	/**
+	 * View of a single band.
+	 */
+	private class Column extends AnalyzationData {
+		
+		private final int band;
+		
+		private Column(int band, float minimum, float maximum) {
+			super(minimum, maximum);
+			this.band = band;
+		}
+		
+		@Override
+		public float get(int index) {
+			return Spectrogram.this.get(index, band);
+		}
+		
+		@Override
+		public int size() {
+			return frameCount;
+		}
+		
+	}
+	
+}
@@ -43,6 +43,7 @@ public class FastFourierTransformation extends FourierTransformation {
 		spectrum = new float[timeSize / 2 + 1];
 		real = new float[timeSize];
 		imag = new float[timeSize];
+		buffer = new float[timeSize];
 	}
 	
 	public void scaleBand(int i, float s) {
@@ -126,6 +127,30 @@ public class FastFourierTransformation extends FourierTransformation {
 		fillSpectrum();
 	}
 	
+	/**
+	 * Performs a forward transform on <code>timeSize</code> samples of the source, starting at the given offset, and copies the resulting amplitudes into
+	 * <code>spectrumOut</code> starting at <code>spectrumOffset</code>. The source is left untouched and no memory is allocated, so a single instance can be reused for any number of windows.
+	 * 
+	 * @param source the samples to transform
+	 * @param offset the index of the first sample to transform
+	 * @param spectrumOut the array receiving the spectrum
+	 * @param spectrumOffset the index in <code>spectrumOut</code> receiving the first band
+	 */
+	@Override
+	public void forward(float[] source, int offset, float[] spectrumOut, int spectrumOffset) {
+		if (offset < 0 || offset + timeSize > source.length) {
+			throw new IllegalArgumentException("FFT.forward: The passed sample buffer must contain timeSize() samples from the given offset.");
+		}
+		if (spectrumOffset < 0 || spectrumOut.length - spectrumOffset < spectrum.length) {
+			throw new IllegalArgumentException("FFT.forward: The passed spectrum buffer must have room for specSize() values from the given offset.");
+		}
+		doWindow(source, offset, buffer);
+		bitReverseSamples(buffer);
+		fft();
+		fillSpectrum();
+		System.arraycopy(spectrum, 0, spectrumOut, spectrumOffset, spectrum.length);
+	}
+	
 	/**
 	 * Performs a forward transform on the passed buffers.
 	 * 
@@ -159,6 +184,8 @@ public class FastFourierTransformation extends FourierTransformation {
 	}
 	
 	private int[] reverse;
+	// scratch buffer for windowing samples without altering the source
+	private float[] buffer;
 	
 	private void buildReverseTable() {
 		int N = timeSize;
@@ -91,7 +91,7 @@ public abstract class FourierTransformation {
 	protected int timeSize;
 	protected int sampleRate;
 	protected float bandWidth;
-	protected int whichWindow;
+	protected WindowFunction windowFunction;
 	protected float[] real;
 	protected float[] imag;
 	protected float[] spectrum;
@@ -112,7 +112,7 @@ public abstract class FourierTransformation {
 		bandWidth = (2f / timeSize) * ((float) sampleRate / 2f);
 		noAverages();
 		allocateArrays();
-		whichWindow = NONE;
+		windowFunction = WindowFunction.None;
 	}
 	
 	// allocating real, imag, and spectrum are the responsibility of derived
@@ -226,26 +226,44 @@ public abstract class FourierTransformation {
 	 * @param which FourierTransform.HAMMING or FourierTransform.NONE
 	 */
 	public void window(int which) {
-		if (which < 0 || which > 1) {
+		switch (which) {
+		case NONE:
+			window(WindowFunction.None);
+			break;
+		case HAMMING:
+			window(WindowFunction.Hamming);
+			break;
+		default:
 			throw new IllegalArgumentException("Invalid window type.");
-		} else {
-			whichWindow = which;
 		}
 	}
 	
+	/**
+	 * Sets the window function to use on the samples before taking the forward transform.
+	 * 
+	 * @param function the window function, see {@link WindowFunction} for the available ones
+	 */
+	public void window(WindowFunction function) {
+		if (function == null) throw new IllegalArgumentException("Invalid window function.");
+		windowFunction = function;
+	}
+	
+	/**
+	 * @return the window function used on the samples before taking the forward transform.
+	 */
+	public WindowFunction getWindowFunction() {
+		return windowFunction;
+	}
+	
+	// windows the data in samples in place
 	protected void doWindow(float[] samples) {
-		switch (whichWindow) {
-		case HAMMING:
-			hamming(samples);
-			break;
-		}
+		if (windowFunction != WindowFunction.None) windowFunction.apply(samples);
 	}
 	
-	// windows the data in samples with a Hamming window
-	protected void hamming(float[] samples) {
-		for (int i = 0; i < samples.length; i++) {
-			samples[i] *= (0.54f - 0.46f * Math.cos(TWO_PI * i / (samples.length - 1)));
-		}
+	// writes the windowed samples of source starting at offset into target
+	protected void doWindow(float[] source, int offset, float[] target) {
+		if (windowFunction != WindowFunction.None) windowFunction.apply(source, offset, target);
+		else System.arraycopy(source, offset, target, 0, target.length);
 	}
 	
 	/**
@@ -257,6 +275,15 @@ public abstract class FourierTransformation {
 		return timeSize;
 	}
 	
+	/**
+	 * Returns the sample rate of the samples expected by this transform.
+	 * 
+	 * @return the sample rate of the samples expected by this transform
+	 */
+	public int sampleRate() {
+		return sampleRate;
+	}
+	
 	/**
 	 * Returns the size of the spectrum created by this transform. In other words, the number of frequency bands produced by this transform. This is typically equal to
 	 * <code>timeSize()/2 + 1</code>, see above for an explanation.
@@ -484,6 +511,33 @@ public abstract class FourierTransformation {
 		forward(section);
 	}
 	
+	/**
+	 * Performs a forward transform on values in <code>buffer</code> and copies the resulting spectrum into <code>spectrumOut</code>.
+	 * 
+	 * @param buffer the buffer of samples
+	 * @param startAt the index to start at in the buffer
+	 * @param spectrumOut the array receiving the spectrum, must be at least <code>specSize()</code> long
+	 */
+	public void forward(float[] buffer, int startAt, float[] spectrumOut) {
+		forward(buffer, startAt, spectrumOut, 0);
+	}
+	
+	/**
+	 * Performs a forward transform on values in <code>buffer</code> and copies the resulting spectrum into <code>spectrumOut</code> starting at <code>spectrumOffset</code>.
+	 * 
+	 * @param buffer the buffer of samples
+	 * @param startAt the index to start at in the buffer
+	 * @param spectrumOut the array receiving the spectrum
+	 * @param spectrumOffset the index in <code>spectrumOut</code> receiving the first band
+	 */
+	public void forward(float[] buffer, int startAt, float[] spectrumOut, int spectrumOffset) {
+		if (spectrumOffset < 0 || spectrumOut.length - spectrumOffset < spectrum.length) {
+			throw new IllegalArgumentException("FourierTransform.forward: The passed spectrum buffer must have room for specSize() values from the given offset.");
+		}
+		forward(buffer, startAt);
+		System.arraycopy(spectrum, 0, spectrumOut, spectrumOffset, spectrum.length);
+	}
+	
 	/**
 	 * Performs an inverse transform of the frequency spectrum and places the result in <code>buffer</code>.
 	 * 
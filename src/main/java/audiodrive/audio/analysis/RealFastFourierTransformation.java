@@ -0,0 +1,230 @@
+package audiodrive.audio.analysis;
+
+/**
+ * FFT for real valued input. The <code>timeSize</code> real samples are packed into a complex signal of half the size, with even samples as real and odd samples as imaginary
+ * parts, which is transformed by a complex FFT of size <code>timeSize / 2</code>. A final split step separates the transforms of the even and odd samples and combines them into
+ * the spectrum of the original signal. This produces the same spectrum as {@link FastFourierTransformation}, while doing roughly half the work.
+ * <p>
+ * Like {@link DiscreteFourierTransformation}, only the non-negative frequencies are stored, so <code>getSpectrumReal()</code> and <code>getSpectrumImaginary()</code> are
+ * <code>timeSize / 2 + 1</code> long.
+ * 
+ * @see FastFourierTransformation
+ */
+public class RealFastFourierTransformation extends FourierTransformation {
+	
+	private final int halfSize;
+	
+	/**
+	 * Constructs a real valued FFT that will accept sample buffers that are <code>timeSize</code> long and have been recorded with a sample rate of <code>sampleRate</code>.
+	 * <code>timeSize</code> <em>must</em> be a power of two of at least 2. This will throw an exception if it is not.
+	 * 
+	 * @param timeSize the length of the sample buffers you will be analyzing
+	 * @param sampleRate the sample rate of the audio you will be analyzing
+	 */
+	public RealFastFourierTransformation(int timeSize, float sampleRate) {
+		super(timeSize, sampleRate);
+		if (timeSize < 2 || (timeSize & (timeSize - 1)) != 0) throw new IllegalArgumentException("RealFFT: timeSize must be a power of two of at least 2.");
+		halfSize = timeSize / 2;
+		buildReverseTable();
+		buildTrigTables();
+	}
+	
+	protected void allocateArrays() {
+		spectrum = new float[timeSize / 2 + 1];
+		real = new float[timeSize / 2 + 1];
+		imag = new float[timeSize / 2 + 1];
+		packedReal = new float[timeSize / 2];
+		packedImag = new float[timeSize / 2];
+		buffer = new float[timeSize];
+	}
+	
+	public void scaleBand(int i, float s) {
+		if (s < 0) {
+			throw new IllegalArgumentException("Can't scale a frequency band by a negative value.");
+		}
+		if (spectrum[i] != 0) {
+			real[i] /= spectrum[i];
+			imag[i] /= spectrum[i];
+			spectrum[i] *= s;
+			real[i] *= spectrum[i];
+			imag[i] *= spectrum[i];
+		}
+	}
+	
+	public void setBand(int i, float a) {
+		if (a < 0) {
+			throw new IllegalArgumentException("Can't set a frequency band to a negative value.");
+		}
+		if (real[i] == 0 && imag[i] == 0) {
+			real[i] = a;
+			spectrum[i] = a;
+		} else {
+			real[i] /= spectrum[i];
+			imag[i] /= spectrum[i];
+			spectrum[i] = a;
+			real[i] *= spectrum[i];
+			imag[i] *= spectrum[i];
+		}
+	}
+	
+	public void forward(float[] buffer) {
+		if (buffer.length != timeSize) {
+			throw new IllegalArgumentException("RealFFT.forward: The length of the passed sample buffer must be equal to timeSize().");
+		}
+		doWindow(buffer);
+		transform(buffer);
+	}
+	
+	/**
+	 * Performs a forward transform on <code>timeSize</code> samples of the source, starting at the given offset, and copies the resulting amplitudes into
+	 * <code>spectrumOut</code> starting at <code>spectrumOffset</code>. The source is left untouched and no memory is allocated.
+	 * 
+	 * @param source the samples to transform
+	 * @param offset the index of the first sample to transform
+	 * @param spectrumOut the array receiving the spectrum
+	 * @param spectrumOffset the index in <code>spectrumOut</code> receiving the first band
+	 */
+	@Override
+	public void forward(float[] source, int offset, float[] spectrumOut, int spectrumOffset) {
+		if (offset < 0 || offset + timeSize > source.length) {
+			throw new IllegalArgumentException("RealFFT.forward: The passed sample buffer must contain timeSize() samples from the given offset.");
+		}
+		if (spectrumOffset < 0 || spectrumOut.length - spectrumOffset < spectrum.length) {
+			throw new IllegalArgumentException("RealFFT.forward: The passed spectrum buffer must have room for specSize() values from the given offset.");
+		}
+		doWindow(source, offset, buffer);
+		transform(buffer);
+		System.arraycopy(spectrum, 0, spectrumOut, spectrumOffset, spectrum.length);
+	}
+	
+	public void inverse(float[] buffer) {
+		if (buffer.length != timeSize) {
+			throw new IllegalArgumentException("RealFFT.inverse: the passed array's length must equal RealFFT.timeSize().");
+		}
+		// merge the spectrum back into the packed half size spectrum
+		for (int k = 0; k < halfSize; k++) {
+			int m = halfSize - k;
+			float evenReal = (real[k] + real[m]) / 2;
+			float evenImag = (imag[k] - imag[m]) / 2;
+			float diffReal = real[k] - real[m];
+			float diffImag = imag[k] + imag[m];
+			float oddReal = (diffReal * cos[k] - diffImag * sin[k]) / 2;
+			float oddImag = (diffReal * sin[k] + diffImag * cos[k]) / 2;
+			packedReal[k] = evenReal - oddImag;
+			// conjugated for the inverse transform
+			packedImag[k] = -(evenImag + oddReal);
+		}
+		bitReversePacked();
+		fft();
+		for (int n = 0; n < halfSize; n++) {
+			buffer[2 * n] = packedReal[n] / halfSize;
+			buffer[2 * n + 1] = -packedImag[n] / halfSize;
+		}
+	}
+	
+	// transforms the windowed samples and fills real, imag and spectrum
+	private void transform(float[] samples) {
+		// pack even samples as real and odd samples as imaginary parts in bit reversed order
+		for (int i = 0; i < halfSize; i++) {
+			int index = 2 * reverse[i];
+			packedReal[i] = samples[index];
+			packedImag[i] = samples[index + 1];
+		}
+		fft();
+		// split the packed spectrum into the spectra of even and odd samples and combine them
+		for (int k = 0; k <= halfSize; k++) {
+			int a = (k == halfSize) ? 0 : k;
+			int b = (k == 0) ? 0 : halfSize - k;
+			float evenReal = (packedReal[a] + packedReal[b]) / 2;
+			float evenImag = (packedImag[a] - packedImag[b]) / 2;
+			float oddReal = (packedImag[a] + packedImag[b]) / 2;
+			float oddImag = (packedReal[b] - packedReal[a]) / 2;
+			real[k] = evenReal + cos[k] * oddReal + sin[k] * oddImag;
+			imag[k] = evenImag + cos[k] * oddImag - sin[k] * oddReal;
+		}
+		fillSpectrum();
+	}
+	
+	// performs an in-place fft on the data in the packed arrays
+	// bit reversing is not necessary as the data will already be bit reversed
+	private void fft() {
+		for (int size = 1; size < halfSize; size *= 2) {
+			float phaseShiftStepR = stepCos[size];
+			float phaseShiftStepI = stepSin[size];
+			float currentPhaseShiftR = 1.0f;
+			float currentPhaseShiftI = 0.0f;
+			for (int fftStep = 0; fftStep < size; fftStep++) {
+				for (int i = fftStep; i < halfSize; i += 2 * size) {
+					int off = i + size;
+					float tr = (currentPhaseShiftR * packedReal[off]) - (currentPhaseShiftI * packedImag[off]);
+					float ti = (currentPhaseShiftR * packedImag[off]) + (currentPhaseShiftI * packedReal[off]);
+					packedReal[off] = packedReal[i] - tr;
+					packedImag[off] = packedImag[i] - ti;
+					packedReal[i] += tr;
+					packedImag[i] += ti;
+				}
+				float tmpR = currentPhaseShiftR;
+				currentPhaseShiftR = (tmpR * phaseShiftStepR) - (currentPhaseShiftI * phaseShiftStepI);
+				currentPhaseShiftI = (tmpR * phaseShiftStepI) + (currentPhaseShiftI * phaseShiftStepR);
+			}
+		}
+	}
+	
+	private int[] reverse;
+	// packed half size signal
+	private float[] packedReal;
+	private float[] packedImag;
+	// scratch buffer for windowing samples without altering the source
+	private float[] buffer;
+	
+	private void buildReverseTable() {
+		int N = halfSize;
+		reverse = new int[N];
+		
+		// set up the bit reversing table
+		reverse[0] = 0;
+		for (int limit = 1, bit = N / 2; limit < N; limit <<= 1, bit >>= 1)
+			for (int i = 0; i < limit; i++)
+				reverse[i + limit] = reverse[i] + bit;
+	}
+	
+	// bit reverse the packed arrays in place
+	private void bitReversePacked() {
+		for (int i = 0; i < halfSize; i++) {
+			int j = reverse[i];
+			if (i < j) {
+				float tmp = packedReal[i];
+				packedReal[i] = packedReal[j];
+				packedReal[j] = tmp;
+				tmp = packedImag[i];
+				packedImag[i] = packedImag[j];
+				packedImag[j] = tmp;
+			}
+		}
+	}
+	
+	// lookup tables
+	
+	// phase shift steps of the half size fft
+	private float[] stepSin;
+	private float[] stepCos;
+	// twiddle factors of the split step
+	private float[] sin;
+	private float[] cos;
+	
+	private void buildTrigTables() {
+		stepSin = new float[halfSize];
+		stepCos = new float[halfSize];
+		for (int i = 0; i < halfSize; i++) {
+			stepSin[i] = (float) Math.sin(-(float) Math.PI / i);
+			stepCos[i] = (float) Math.cos(-(float) Math.PI / i);
+		}
+		sin = new float[halfSize + 1];
+		cos = new float[halfSize + 1];
+		for (int k = 0; k <= halfSize; k++) {
+			sin[k] = (float) Math.sin(TWO_PI * k / timeSize);
+			cos[k] = (float) Math.cos(TWO_PI * k / timeSize);
+		}
+	}
+	
+}
@@ -0,0 +1,190 @@
+package audiodrive.audio.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Window function applied to the samples before a Fourier transformation. The coefficients are calculated once per window key and length and cached, so that applying a
+ * window is a plain multiplication. Window functions are registered by name, additional ones can be added with {@link #register(WindowFunction)}.
+ */
+public abstract class WindowFunction {
+	
+	private static final Map<String, WindowFunction> Registry = Collections.synchronizedMap(new LinkedHashMap<>());
+	/** Coefficients by window key and length, shared by windows with the same key. */
+	private static final Map<String, Map<Integer, float[]>> Tables = new ConcurrentHashMap<>();
+	
+	public static final WindowFunction None = register(new WindowFunction("None") {
+		@Override
+		protected double coefficient(int index, int length) {
+			return 1;
+		}
+	});
+	
+	/** Good frequency resolution with moderate leakage. */
+	public static final WindowFunction Hamming = register(new WindowFunction("Hamming") {
+		@Override
+		protected double coefficient(int index, int length) {
+			return 0.54 - 0.46 * Math.cos(2 * Math.PI * index / (length - 1));
+		}
+	});
+	
+	/** Slightly wider main lobe than Hamming, but side lobes fall off faster. */
+	public static final WindowFunction Hann = register(new WindowFunction("Hann") {
+		@Override
+		protected double coefficient(int index, int length) {
+			return 0.5 - 0.5 * Math.cos(2 * Math.PI * index / (length - 1));
+		}
+	});
+	
+	/** Very low leakage at the cost of a wide main lobe. */
+	public static final WindowFunction BlackmanHarris = register(new WindowFunction("Blackman-Harris") {
+		@Override
+		protected double coefficient(int index, int length) {
+			double x = 2 * Math.PI * index / (length - 1);
+			return 0.35875 - 0.48829 * Math.cos(x) + 0.14128 * Math.cos(2 * x) - 0.01168 * Math.cos(3 * x);
+		}
+	});
+	
+	/** Adjustable trade-off between main lobe width and leakage, with a beta of 8.6 it's similar to Blackman-Harris. */
+	public static final WindowFunction Kaiser = register(new KaiserWindow(8.6));
+	
+	private final String name;
+	private final String key;
+	private final Map<Integer, float[]> tables;
+	
+	protected WindowFunction(String name) {
+		this(name, name);
+	}
+	
+	/**
+	 * Creates a window function whose coefficients are identified by the given key, which must include all parameters of the window.
+	 */
+	protected WindowFunction(String name, String key) {
+		this.name = name;
+		this.key = key;
+		tables = Tables.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+	}
+	
+	/**
+	 * Calculates the coefficient at the given index of a window with the given length.
+	 */
+	protected abstract double coefficient(int index, int length);
+	
+	/**
+	 * Returns the cached coefficients of a window with the given length. The returned array is shared and must not be modified.
+	 */
+	public float[] coefficients(int length) {
+		return tables.computeIfAbsent(length, key -> {
+			float[] table = new float[length];
+			if (length == 1) table[0] = 1;
+			else for (int i = 0; i < length; i++)
+				table[i] = (float) coefficient(i, length);
+			return table;
+		});
+	}
+	
+	/**
+	 * Multiplies the samples with the window in place.
+	 */
+	public void apply(float[] samples) {
+		float[] table = coefficients(samples.length);
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] *= table[i];
+		}
+	}
+	
+	/**
+	 * Writes the windowed <code>target.length</code> samples of the source, starting at the given offset, into the target. The source is left untouched.
+	 */
+	public void apply(float[] source, int offset, float[] target) {
+		float[] table = coefficients(target.length);
+		for (int i = 0; i < target.length; i++) {
+			target[i] = source[offset + i] * table[i];
+		}
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the key which identifies the coefficients, i.e. the name and parameters of the window.
+	 */
+	public String getKey() {
+		return key;
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+	
+	/**
+	 * Registers the window function by its name, replacing any previously registered one with the same name.
+	 */
+	public static <T extends WindowFunction> T register(T function) {
+		Registry.put(function.getName(), function);
+		return function;
+	}
+	
+	/**
+	 * Returns the window function registered with the given name, or <code>null</code> if there is none.
+	 */
+	public static WindowFunction forName(String name) {
+		return Registry.get(name);
+	}
+	
+	/**
+	 * Returns all registered window functions in the order of registration.
+	 */
+	public static List<WindowFunction> all() {
+		synchronized (Registry) {
+			return new ArrayList<>(Registry.values());
+		}
+	}
+	
+	/**
+	 * Kaiser window, the shape parameter beta trades main lobe width for side lobe level.
+	 */
+	public static class KaiserWindow extends WindowFunction {
+		
+		private final double beta;
+		
+		public KaiserWindow(double beta) {
+			this("Kaiser", beta);
+		}
+		
+		public KaiserWindow(String name, double beta) {
+			super(name, "Kaiser " + beta);
+			this.beta = beta;
+		}
+		
+		@Override
+		protected double coefficient(int index, int length) {
+			double x = 2.0 * index / (length - 1) - 1;
+			return bessel(beta * Math.sqrt(1 - x * x)) / bessel(beta);
+		}
+		
+		public double getBeta() {
+			return beta;
+		}
+		
+		/** Zeroth order modified bessel function of the first kind. */
+		private static double bessel(double x) {
+			double sum = 1;
+			double term = 1;
+			double half = x / 2;
+			for (int k = 1; k < 50 && term > sum * 1e-12; k++) {
+				term *= (half / k) * (half / k);
+				sum += term;
+			}
+			return sum;
+		}
+		
+	}
+	
+}
@@ -4,11 +4,13 @@ import static org.lwjgl.opengl.GL11.*;
 
 import audiodrive.AudioDrive;
 import audiodrive.audio.AudioResource;
+import audiodrive.audio.SfxMixer;
 import audiodrive.model.geometry.Color;
 import audiodrive.model.geometry.Vector;
 import audiodrive.model.geometry.transform.Rotation;
 import audiodrive.model.loader.Model;
 import audiodrive.model.track.Block;
+import audiodrive.model.track.IterationIndex;
 import audiodrive.model.track.Track;
 import audiodrive.ui.GL;
 import audiodrive.ui.components.Camera;
@@ -21,8 +23,8 @@ import audiodrive.utilities.Range;
 
 public class Player implements Renderable {
 	
-	private static final AudioResource CollectSound = new AudioResource("sounds/Collect.wav");
-	private static final AudioResource CollideSound = new AudioResource("sounds/Collide.wav");
+	private static final SfxMixer.Effect CollectSound = SfxMixer.Default.load(new AudioResource("sounds/Collect.wav"));
+	private static final SfxMixer.Effect CollideSound = SfxMixer.Default.load(new AudioResource("sounds/Collide.wav"));
 	private static final Color CollisionColor = new Color(0.8, 0.2, 0.2, 1);
 	
 	private GameScene scene;
@@ -58,6 +60,7 @@ public class Player implements Renderable {
 	private int hitboxStart;
 	private int hitboxEnd;
 	private double hitboxSide;
+	private IterationIndex<Block>.Window collisionWindow;
 	
 	private double glowing;
 	private boolean hit;
@@ -70,6 +73,7 @@ public class Player implements Renderable {
 	public Player(GameScene scene) {
 		this.scene = scene;
 		track = scene.getTrack();
+		collisionWindow = track.getBlockIndex().window();
 		double difficulty = Arithmetic.clamp(AudioDrive.Settings.getDouble("game.difficulty"));
 		hitpoints = Math.max(1, (int) (track.getNumberOfObstacles() * (1 - difficulty)));
 		Log.debug("track \"" + track.getAudio().getResource().getName() + "\"");
@@ -87,7 +91,7 @@ public class Player implements Renderable {
 	
 	@Override
 	public void update(double elapsed) {
-		model.placement(track.getPlacement(scene.playtime()));
+		track.getPlacement(scene.playtime(), model.placement());
 		if (glowing > 0) {
 			glowing -= elapsed;
 			if (glowing < 0) glowing = 0;
@@ -174,13 +178,13 @@ public class Player implements Renderable {
 	
 	private boolean checkCollisions(double elapsed) {
 		double tiltFraction = 0.5 - Math.abs(0.5 - tiltProgress);
-		hitboxStart = track.index().integer - (int) (track.indexRate() * elapsed);
+		hitboxStart = (int) track.getPosition(scene.playtime() - elapsed);
 		hitboxEnd = track.index().integer + (int) Math.ceil(track.index().fraction);
 		hitboxSide = track.railWidth() * Arithmetic.smooth(0.01, 0.5, tiltFraction);
-		long collisions = track
-			.getBlocks()
+		long collisions = collisionWindow
+			.range(hitboxStart, hitboxEnd)
 			.stream()
-			.filter(block -> !block.isDestroyed() && (block.iteration() >= hitboxStart && block.iteration() <= hitboxEnd))
+			.filter(block -> !block.isDestroyed())
 			.filter(this::interact)
 			.filter(block -> !block.isCollectable())
 			.count();
@@ -235,8 +239,8 @@ public class Player implements Renderable {
 	
 	private void renderHitbox() {
 		Vector side = model.placement().side().multiplied(hitboxSide);
-		Vector start = track.spline().get(Math.max(0, hitboxStart)).plus(model.translation().vector());
-		Vector end = track.spline().get(Math.min(track.spline().size() - 1, hitboxEnd)).plus(model.translation().vector());
+		Vector start = track.spline().get(Math.max(0, hitboxStart), new Vector()).add(model.translation().vector());
+		Vector end = track.spline().get(Math.min(track.spline().size() - 1, hitboxEnd), new Vector()).add(model.translation().vector());
 		Vector up = model.up().multiplied(0.2);
 		start.add(up);
 		end.add(up);
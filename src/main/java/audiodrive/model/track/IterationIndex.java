@@ -0,0 +1,120 @@
+package audiodrive.model.track;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.ToIntFunction;
+
+/**
+ * Items sorted by the iteration they belong to, which allows to query the items of an iteration range in O(log n + k) instead of scanning all of them. Queries which move
+ * along with the playback should go through a {@link Window}, which continues searching from its previous bounds.
+ */
+public class IterationIndex<T> {
+	
+	private final List<T> items;
+	private final int[] iterations;
+	
+	/**
+	 * Creates an index of the given items, which are sorted by the given iteration function. Items of the same iteration keep their order.
+	 */
+	public IterationIndex(Collection<T> items, ToIntFunction<? super T> iteration) {
+		List<T> sorted = new ArrayList<>(items);
+		sorted.sort(Comparator.comparingInt(iteration));
+		this.items = Collections.unmodifiableList(sorted);
+		iterations = sorted.stream().mapToInt(iteration).toArray();
+	}
+	
+	public int size() {
+		return iterations.length;
+	}
+	
+	/**
+	 * Returns all items, sorted by iteration.
+	 */
+	public List<T> items() {
+		return items;
+	}
+	
+	/**
+	 * Returns the items with an iteration in the given inclusive range, found by binary search.
+	 */
+	public List<T> range(int minimum, int maximum) {
+		int start = search(minimum, 0, size());
+		int end = Math.max(start, search(maximum + 1L, start, size()));
+		return items.subList(start, end);
+	}
+	
+	/**
+	 * Returns a new window, which starts at the first item.
+	 */
+	public Window window() {
+		return new Window();
+	}
+	
+	/**
+	 * Returns the position of the first item in [low, high) with an iteration not less than the given one, or <code>high</code> if there is none.
+	 */
+	private int search(long iteration, int low, int high) {
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (iterations[middle] < iteration) low = middle + 1;
+			else high = middle;
+		}
+		return low;
+	}
+	
+	/**
+	 * Returns the position of the first item with an iteration not less than the given one, starting at the given position. Searches forward with exponentially growing
+	 * steps, so moving by k items takes O(log k), and falls back to binary search when moving backward.
+	 */
+	private int seek(long iteration, int position) {
+		if (position > 0 && iterations[position - 1] >= iteration) return search(iteration, 0, position);
+		int low = position;
+		int high = position;
+		int step = 1;
+		while (high < size() && iterations[high] < iteration) {
+			low = high + 1;
+			high = Math.min(size(), high + step);
+			step <<= 1;
+		}
+		return search(iteration, low, high);
+	}
+	
+	/**
+	 * Range of items which slides along with the queries. It remembers its bounds, so that the next query only searches from there, and is a view of the items in range
+	 * itself, so moving it doesn't allocate anything. Each consumer should use a window of its own.
+	 */
+	public class Window extends AbstractList<T> implements RandomAccess {
+		
+		private int start;
+		private int end;
+		
+		private Window() {}
+		
+		/**
+		 * Moves the window to the items with an iteration in the given inclusive range and returns itself.
+		 */
+		public Window range(int minimum, int maximum) {
+			start = seek(minimum, start);
+			end = Math.max(start, seek(maximum + 1L, Math.max(start, end)));
+			return this;
+		}
+		
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			return items.get(start + index);
+		}
+		
+		@Override
+		public int size() {
+			return end - start;
+		}
+		
+	}
+	
+}
@@ -41,6 +41,11 @@ public class Ring implements Renderable {
 		glDepthMask(true); // enable depth
 	}
 	
+	public Ring iteration(int iteration) {
+		this.iteration = iteration;
+		return this;
+	}
+	
 	public int iteration() {
 		return iteration;
 	}
@@ -0,0 +1,172 @@
+package audiodrive.model.track;
+
+import java.util.List;
+
+import audiodrive.model.geometry.Vector;
+import audiodrive.model.geometry.transform.Placement;
+
+/**
+ * Spline points packed into a primitive array, with the orientation of each segment and the arc length up to each point precomputed. Placements along the spline are
+ * written into existing objects, so querying it doesn't allocate anything.
+ */
+public class SplinePath {
+	
+	/** Number of values of the orientation of a segment, i.e. direction, up and side vector. */
+	private static final int FrameSize = 9;
+	
+	/** Interleaved x, y and z coordinates of the points. */
+	private final double[] points;
+	/** Normalized direction, up and side vector of each segment, the up vector is perpendicular to the direction and the side vector horizontal. */
+	private final double[] frames;
+	/** Arc length from the first point up to each point. */
+	private final double[] distances;
+	private final int size;
+	
+	/**
+	 * Creates a path of the given interleaved x, y and z coordinates, which are used without copying them.
+	 */
+	public SplinePath(double[] points) {
+		if (points.length % 3 != 0) throw new IllegalArgumentException("The number of coordinates must be a multiple of three.");
+		this.points = points;
+		size = points.length / 3;
+		frames = new double[Math.max(0, size - 1) * FrameSize];
+		distances = new double[size];
+		for (int segment = 0; segment < size - 1; segment++) {
+			int p = segment * 3;
+			int f = segment * FrameSize;
+			double dx = points[p + 3] - points[p];
+			double dy = points[p + 4] - points[p + 1];
+			double dz = points[p + 5] - points[p + 2];
+			double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+			distances[segment + 1] = distances[segment] + length;
+			// the side is the cross product of direction and the y axis, which is undefined for vertical segments
+			double sideLength = Math.sqrt(dx * dx + dz * dz);
+			if (sideLength == 0) {
+				if (segment > 0) System.arraycopy(frames, f - FrameSize, frames, f, FrameSize);
+				else {
+					// default orientation along the z axis
+					frames[f + 2] = 1;
+					frames[f + 4] = 1;
+					frames[f + 6] = -1;
+				}
+				continue;
+			}
+			dx /= length;
+			dy /= length;
+			dz /= length;
+			double sx = -dz * length / sideLength;
+			double sz = dx * length / sideLength;
+			frames[f] = dx;
+			frames[f + 1] = dy;
+			frames[f + 2] = dz;
+			// up = side x direction
+			frames[f + 3] = -sz * dy;
+			frames[f + 4] = sz * dx - sx * dz;
+			frames[f + 5] = sx * dy;
+			frames[f + 6] = sx;
+			frames[f + 7] = 0;
+			frames[f + 8] = sz;
+		}
+	}
+	
+	public SplinePath(List<Vector> points) {
+		this(pack(points));
+	}
+	
+	private static double[] pack(List<Vector> vectors) {
+		double[] points = new double[vectors.size() * 3];
+		for (int i = 0; i < vectors.size(); i++) {
+			Vector vector = vectors.get(i);
+			points[3 * i] = vector.x();
+			points[3 * i + 1] = vector.y();
+			points[3 * i + 2] = vector.z();
+		}
+		return points;
+	}
+	
+	/**
+	 * Returns the number of points.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public double x(int index) {
+		return points[3 * index];
+	}
+	
+	public double y(int index) {
+		return points[3 * index + 1];
+	}
+	
+	public double z(int index) {
+		return points[3 * index + 2];
+	}
+	
+	/**
+	 * Copies the point with the given index into the given vector.
+	 */
+	public Vector get(int index, Vector out) {
+		return out.set(points[3 * index], points[3 * index + 1], points[3 * index + 2]);
+	}
+	
+	/**
+	 * Returns the arc length from the first point up to the point with the given index.
+	 */
+	public double distance(int index) {
+		return distances[index];
+	}
+	
+	/**
+	 * Returns the arc length from the first point up to the given fractional index, the inverse of {@link #indexAt(double)}.
+	 */
+	public double distanceAt(double index) {
+		if (size < 2 || index <= 0) return 0;
+		if (index >= size - 1) return distances[size - 1];
+		int low = (int) index;
+		return distances[low] + (index - low) * (distances[low + 1] - distances[low]);
+	}
+	
+	/**
+	 * Returns the arc length of the whole path.
+	 */
+	public double length() {
+		return size > 0 ? distances[size - 1] : 0;
+	}
+	
+	/**
+	 * Returns the fractional index of the point at the given arc length from the first point, found by binary search in O(log n).
+	 */
+	public double indexAt(double distance) {
+		if (size < 2 || distance <= 0) return 0;
+		if (distance >= distances[size - 1]) return size - 1;
+		int low = 0;
+		int high = size - 1;
+		// invariant: distances[low] <= distance < distances[high]
+		while (high - low > 1) {
+			int middle = (low + high) >>> 1;
+			if (distances[middle] <= distance) low = middle;
+			else high = middle;
+		}
+		double length = distances[high] - distances[low];
+		return low + (length > 0 ? (distance - distances[low]) / length : 0);
+	}
+	
+	/**
+	 * Writes the placement at the given fraction of the segment starting at the given point into the given placement. The placement faces along the segment, is raised by the
+	 * given height along the y axis and shifted sideways by the given offset.
+	 */
+	public Placement placementAt(int index, double fraction, double height, double offset, Placement out) {
+		if (index > size - 2) index = size - 2;
+		int p = index * 3;
+		int f = index * FrameSize;
+		double x = points[p] + (points[p + 3] - points[p]) * fraction + frames[f + 6] * offset;
+		double y = points[p + 1] + (points[p + 4] - points[p + 1]) * fraction + height;
+		double z = points[p + 2] + (points[p + 5] - points[p + 2]) * fraction + frames[f + 8] * offset;
+		out.position().set(x, y, z);
+		out.direction().set(frames[f], frames[f + 1], frames[f + 2]);
+		out.up().set(frames[f + 3], frames[f + 4], frames[f + 5]);
+		return out;
+	}
+	
+}
@@ -5,17 +5,19 @@ import static org.lwjgl.opengl.GL12.GL_TEXTURE_MAX_LEVEL;
 import static org.lwjgl.opengl.GL14.GL_TEXTURE_LOD_BIAS;
 import static org.lwjgl.opengl.GL30.glGenerateMipmap;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.newdawn.slick.opengl.Texture;
 
 import audiodrive.AudioDrive;
 import audiodrive.Resources;
+import audiodrive.audio.AnalyzationData;
 import audiodrive.audio.AnalyzedAudio;
 import audiodrive.audio.AnalyzedChannel;
+import audiodrive.audio.Spectrogram;
 import audiodrive.model.Player;
 import audiodrive.model.Renderable;
 import audiodrive.model.buffer.VertexBuffer;
@@ -38,14 +40,16 @@ import audiodrive.ui.effects.Glow;
 import audiodrive.ui.effects.Particles3D;
 import audiodrive.ui.scenes.GameScene;
 import audiodrive.utilities.Arithmetic;
+import audiodrive.utilities.Log;
 import audiodrive.utilities.Range;
 
 public class Track implements Renderable {
 	
 	private final AnalyzedAudio audio;
-	private final List<Vector> spline;
-	private final List<Block> blocks;
+	private final SplinePath spline;
+	private final IterationIndex<Block> blocks;
 	private final int smoothing;
+	private final Parameterization parameterization;
 	
 	private final int numberOfRails = 3;
 	private final int numberOfCollectables;
@@ -53,9 +57,22 @@ public class Track implements Renderable {
 	private final double indexRate;
 	
 	private List<Block> visibleBlocks;
-	private List<Ring> visibleRings;
+	private ArrayDeque<Ring> visibleRings = new ArrayDeque<>();
+	private ArrayDeque<Ring> ringPool = new ArrayDeque<>();
+	/** Range of spline indices [ringsFrom, ringsTo) covered by the visible rings. */
+	private int ringsFrom;
+	private int ringsTo;
+	/** Visible blocks and rings whose reflections are drawn, refilled each frame. */
+	private List<Block> reflectedBlocks = new ArrayList<>();
+	private List<Ring> reflectedRings = new ArrayList<>();
+	/** Rotation which flips reflected objects horizontally. */
+	private final Rotation flip = new Rotation().z(180);
+	/** Position of the object which is being reflected, which is restored after drawing its reflection. */
+	private final Vector reflectedPosition = new Vector();
 	private List<MusicTower> visibleMusicTowers;
-	private List<MusicTower> musicTowers;
+	private IterationIndex<MusicTower> musicTowers;
+	private IterationIndex<Block>.Window blockWindow;
+	private IterationIndex<MusicTower>.Window musicTowerWindow;
 	
 	private List<Vector> splineArea;
 	private List<Vertex> splineArea2;
@@ -90,16 +107,28 @@ public class Track implements Renderable {
 	private Particles3D particles;
 	
 	private Player player;
-	private Index index;
+	/** Index at the current time, which is updated in place. */
+	private final Index index;
+	/** Placement at which particles are created, which is updated in place. */
+	private final Placement particlePlacement = new Placement();
+	/** Inverse of the border color at each spline index. */
+	private Color[] inverseColors;
 	
-	public Track(AnalyzedAudio audio, List<Vector> spline, List<Block> blocks, int smoothing) {
+	private double[] intensities;
+	private double aggregatedBandsMaximum;
+	
+	public Track(AnalyzedAudio audio, SplinePath spline, List<Block> blocks, int smoothing, Parameterization parameterization) {
 		this.audio = audio;
 		this.spline = spline;
-		this.blocks = blocks;
+		this.blocks = new IterationIndex<>(blocks, Block::iteration);
+		blockWindow = this.blocks.window();
 		this.smoothing = smoothing;
+		this.parameterization = parameterization;
 		numberOfCollectables = (int) blocks.stream().filter(Block::isCollectable).count();
 		numberOfObstacles = blocks.size() - numberOfCollectables;
 		indexRate = spline.size() / audio.getDuration();
+		aggregatedBandsMaximum = audio.getMix().getAggregatedBands().columns().stream().mapToDouble(AnalyzationData::maximum).max().orElse(1);
+		index = new Index(0, 0);
 	}
 	
 	public void build() {
@@ -118,12 +147,12 @@ public class Track implements Renderable {
 			splineArea2Buffer.draw();
 			leftBorderVertexBuffer.draw();
 			rightBorderVertexBuffer.draw();
-			visibleBlocks.stream().filter(block -> !block.isGlowing()).forEach(Block::render);
+			renderBlocks(false);
 			if (!player.isGlowing()) player.render();
 		}).renderpass(() -> {
-			visibleBlocks.stream().filter(Block::isGlowing).forEach(Block::render);
-			if (GameScene.environment) visibleMusicTowers.stream().forEach(MusicTower::render);
-			if (GameScene.rings) visibleRings.stream().forEach(Ring::render);
+			renderBlocks(true);
+			if (GameScene.environment) renderMusicTowers();
+			if (GameScene.rings) renderRings();
 			particles.render();
 			if (player.isGlowing()) player.render();
 		});
@@ -134,28 +163,31 @@ public class Track implements Renderable {
 	}
 	
 	private void generateTowers() {
-		musicTowers = new ArrayList<>();
-		if (!GameScene.environment) return;
-		int spacing = 300;
-		for (int iteration = spacing; iteration < spline.size(); iteration += spacing) {
-			float peak = audio.getMix().getThreshold().getClamped(iteration);
-			if (peak > 0.7) musicTowers.add(new TubeTower(iteration));
-			else if (peak > 0.3) musicTowers.add(new SpectralTower(iteration));
-			else musicTowers.add(new RotationTower(iteration));
+		List<MusicTower> musicTowers = new ArrayList<>();
+		if (GameScene.environment) {
+			int spacing = 300;
+			for (int iteration = spacing; iteration < spline.size(); iteration += spacing) {
+				float peak = audio.getMix().getThreshold().getClamped(getFrameAtIndex(iteration));
+				if (peak > 0.7) musicTowers.add(new TubeTower(iteration));
+				else if (peak > 0.3) musicTowers.add(new SpectralTower(iteration));
+				else musicTowers.add(new RotationTower(iteration));
+			}
 		}
+		this.musicTowers = new IterationIndex<>(musicTowers, MusicTower::iteration);
+		musicTowerWindow = this.musicTowers.window();
 	}
 	
 	private void generateTrack() {
 		splineArea = new ArrayList<>();
 		splineArea2 = new ArrayList<>();
 		
-		if (spline == null || spline.isEmpty()) return;
+		if (spline == null || spline.size() == 0) return;
 		Vector last = null;
 		
 		double sideWidth = width / 2;
 		for (int i = 0; i < spline.size() - 1; i++) {
-			Vector one = spline.get(i);
-			Vector two = spline.get(i + 1);
+			Vector one = spline.get(i, new Vector());
+			Vector two = spline.get(i + 1, new Vector());
 			Vector next;
 			
 			// Check if first
@@ -171,7 +203,7 @@ public class Track implements Renderable {
 			}
 			// Check if last
 			if (i < spline.size() - 2) {
-				Vector three = spline.get(i + 2);
+				Vector three = spline.get(i + 2, new Vector());
 				Vector n1 = two.minus(one).cross(Vector.Y).normalize();
 				Vector n2 = three.minus(two).cross(Vector.Y).normalize();
 				next = n1.plus(n2).length(sideWidth / Math.cos(n1.angle(n2) * 0.5));
@@ -221,6 +253,10 @@ public class Track implements Renderable {
 		leftBorderVertexBuffer = new VertexBuffer(leftVertexList).mode(GL_QUAD_STRIP).useColor(true);
 		rightBorderVertexBuffer = new VertexBuffer(rightVertexList).mode(GL_QUAD_STRIP).useColor(true);
 		
+		inverseColors = new Color[lastIndex() + 1];
+		for (int i = 0; i < inverseColors.length; i++) {
+			inverseColors[i] = getColorAtIndex(i).inverse();
+		}
 	}
 	
 	/**
@@ -374,19 +410,19 @@ public class Track implements Renderable {
 	public void update(double time) {
 		int preview = sight;
 		int review = sight / 2;
-		index = getIndex(time);
+		getIndex(time, index);
 		if (GameScene.sky) skybox.placement().position().set(player.model().position());
 		int minimum = Math.max(index.integer - review, 0);
 		int maximum = Math.min(index.integer + preview, lastIndex());
 		
-		int iteration = (int) (audio.getIterationRate() * time);
-		if (iteration >= audio.getIterationCount()) iteration = audio.getIterationCount() - 1;
+		int iteration = getFrame(time);
 		Color borderColor = getColorAtIndex(index.integer);
-		Color inverseBorderColor = borderColor.inverse();
-		visibleBlocks = blocks.stream().filter(block -> block.iteration() > minimum && block.iteration() < maximum).collect(Collectors.toList());
-		visibleBlocks.forEach(block -> {
+		Color inverseBorderColor = inverseColors[index.integer];
+		visibleBlocks = blockWindow.range(minimum + 1, maximum - 1);
+		for (int i = 0; i < visibleBlocks.size(); i++) {
+			Block block = visibleBlocks.get(i);
 			double position = block.iteration() - (block.iteration() - index.integer) / 2.0;
-			block.placement(getPlacement(new Index((int) position, position - (int) position), true, block.rail()));
+			getPlacement((int) position, position - (int) position, block.rail(), block.placement());
 			block.update(index.integer);
 			if (GameScene.colorizeCollectables && GameScene.colorizeObstacles) {
 				block.color(block.isCollectable() ? inverseBorderColor : borderColor);
@@ -396,32 +432,30 @@ public class Track implements Renderable {
 			} else {
 				if (GameScene.colorizeObstacles) block.color(borderColor);
 			}
-		});
+		}
 		
 		AnalyzedChannel mix = audio.getMix();
-		visibleRings = new ArrayList<>();
 		if (GameScene.environment) {
+			updateRings(minimum, maximum);
 			double pulse = GameScene.visualization ? Arithmetic.smooth(0, 2, mix.getPeaks().getClamped(iteration)) : 0;
-			for (int i = minimum; i < maximum; i++) {
-				if (mix.getPeaks().getClamped(i) == 0) continue;
-				double ringScale = 5 - 3 * mix.getThreshold().getClamped(i);
-				Color ringColor = getColorAtIndex(i);
-				Placement placement = getPlacement(new Index(i, 0.5), true, 0);
-				visibleRings.add(new Ring(i, ringColor, placement).scale(ringScale).pulse(pulse));
+			for (Ring ring : visibleRings) {
+				ring.pulse(pulse);
 			}
+		} else {
+			updateRings(0, 0);
 		}
 		
 		double linearIntensity = mix.getBands().get(1).getClamped(iteration);
 		
 		if (GameScene.environment) {
 			double rotationSpeed = mix.getSpectralSum().getClamped(iteration) * 180;
-			visibleMusicTowers = musicTowers
-				.stream()
-				.filter(musicTower -> musicTower.iteration() > index.integer - review && musicTower.iteration() < index.integer + preview * 5)
-				.collect(Collectors.toList());
-			visibleMusicTowers.forEach(musicTower -> {
-				float f = mix.getSpectrum(musicTower.iteration())[1];
-				Placement a = getPlacement(new Index(musicTower.iteration(), 0), true, 0);
+			visibleMusicTowers = musicTowerWindow.range(index.integer - review + 1, index.integer + preview * 5 - 1);
+			for (int i = 0; i < visibleMusicTowers.size(); i++) {
+				MusicTower musicTower = visibleMusicTowers.get(i);
+				float f = mix.getSpectrogram().get(getFrameAtIndex(musicTower.iteration()), 1);
+				Placement a = musicTower.placement();
+				if (a == null) musicTower.placement(a = new Placement());
+				getPlacement(musicTower.iteration(), 0, 0, a);
 				if (musicTower instanceof RotationTower) {
 					((RotationTower) musicTower).rotation(rotationSpeed);
 					a.position().yAdd(15);
@@ -430,33 +464,61 @@ public class Track implements Renderable {
 				}
 				if (musicTower instanceof TubeTower) musicTower.intensity(.1 + linearIntensity);
 				else if (musicTower instanceof RotationTower) musicTower.intensity(Math.min(linearIntensity + 0.5, 1));
-				musicTower.placement(a).color(borderColor);
-			});
+				musicTower.color(borderColor);
+			}
 		} else {
 			visibleMusicTowers = Collections.emptyList();
 		}
 		
-		int combine = 15;
-		double maxIntensity = mix.getMaximum();
-		double[] intensities = new double[audio.getBandCount() / combine + 1];
-		for (int i = 0; i < audio.getBandCount(); i++) {
-			intensities[i / combine] += Arithmetic.scaleLogarithmic(mix.getBands().get(i).get(iteration), 0.0, 1.0 / combine, 0, maxIntensity);
+		Spectrogram aggregatedBands = mix.getAggregatedBands();
+		if (intensities == null || intensities.length != aggregatedBands.getBandCount()) intensities = new double[aggregatedBands.getBandCount()];
+		for (int i = 0; i < intensities.length; i++) {
+			intensities[i] = Arithmetic.scaleLogarithmic(aggregatedBands.get(iteration, i), 0.0, 1.0, 0, aggregatedBandsMaximum);
 		}
 		SpectralTower.spectrum(intensities);
 		
 		if (GameScene.particles) {
 			if (linearIntensity > .5) {
 				final int xOffset = (int) (20 + Math.random() * 10);
-				particles.createParticles(getPlacement(time + 2).position().yAdd(-5).xAdd((Math.random() < .5) ? xOffset : -xOffset), borderColor, linearIntensity);
+				particles.createParticles(getPlacement(time + 2, particlePlacement).position().yAdd(-5).xAdd((Math.random() < .5) ? xOffset : -xOffset), borderColor, linearIntensity);
 			}
 		}
 		particles.update(time);
 	}
 	
+	/**
+	 * Slides the visible rings to the peaks within the spline indices [from, to). Only rings entering the range are placed, rings leaving it are retired to the pool and
+	 * reused. If the range jumped, e.g. after seeking, all rings are replaced. A ring is placed at a spline index if any analysis iteration played while passing the
+	 * index has a peak, so peaks aren't skipped when the analyzation iterations overlap.
+	 */
+	private void updateRings(int from, int to) {
+		if (to < from) to = from;
+		if (from < ringsFrom || from > ringsTo) {
+			while (!visibleRings.isEmpty()) ringPool.push(visibleRings.pollLast());
+			ringsTo = from;
+		}
+		while (!visibleRings.isEmpty() && visibleRings.peekFirst().iteration() < from) ringPool.push(visibleRings.pollFirst());
+		while (!visibleRings.isEmpty() && visibleRings.peekLast().iteration() >= to) ringPool.push(visibleRings.pollLast());
+		AnalyzedChannel mix = audio.getMix();
+		for (int i = ringsTo; i < to; i++) {
+			int frame = getFrameAtIndex(i);
+			int next = Math.max(frame + 1, getFrameAtIndex(i + 1));
+			while (frame < next - 1 && mix.getPeaks().getClamped(frame) == 0) frame++;
+			if (mix.getPeaks().getClamped(frame) == 0) continue;
+			Ring ring = ringPool.isEmpty() ? new Ring(i, null, new Placement()) : ringPool.pop();
+			getPlacement(i, 0.5, 0, ring.placement());
+			visibleRings.add(ring.iteration(i).color(getColorAtIndex(i)).scale(5 - 3 * mix.getThreshold().getClamped(frame)));
+		}
+		ringsFrom = from;
+		ringsTo = to;
+	}
+	
+	/**
+	 * Returns the color of the track border at the given spline index. Colors are immutable, so the border color is shared.
+	 */
 	public Color getColorAtIndex(int index) {
 		// TODO no hax :D
-		final Color color = leftVertexList.get(index * 2).color.clone();
-		return color;
+		return leftVertexList.get(index * 2).color;
 	}
 	
 	@Override
@@ -501,8 +563,10 @@ public class Track implements Renderable {
 		splineArea2Buffer.useColor(true);
 		glCullFace(GL_BACK);
 		
-		if (GameScene.environment) visibleMusicTowers.forEach(MusicTower::render);
-		visibleBlocks.forEach(Block::render);
+		if (GameScene.environment) renderMusicTowers();
+		for (int i = 0; i < visibleBlocks.size(); i++) {
+			visibleBlocks.get(i).render();
+		}
 		
 		// Draw borders
 		leftBorderVertexBuffer.draw();
@@ -511,7 +575,7 @@ public class Track implements Renderable {
 		glDisable(GL_CULL_FACE);
 		glDisable(GL_LIGHTING);
 		if (GameScene.sky) skybox.render();
-		if (GameScene.rings) visibleRings.forEach(Ring::render);
+		if (GameScene.rings) renderRings();
 		glEnable(GL_LIGHTING);
 		glEnable(GL_CULL_FACE);
 		particles.render();
@@ -520,6 +584,28 @@ public class Track implements Renderable {
 		// drawBorderNormals(rightVertexList);
 	}
 	
+	/**
+	 * Renders the visible blocks which are glowing or not glowing.
+	 */
+	private void renderBlocks(boolean glowing) {
+		for (int i = 0; i < visibleBlocks.size(); i++) {
+			Block block = visibleBlocks.get(i);
+			if (block.isGlowing() == glowing) block.render();
+		}
+	}
+	
+	private void renderMusicTowers() {
+		for (int i = 0; i < visibleMusicTowers.size(); i++) {
+			visibleMusicTowers.get(i).render();
+		}
+	}
+	
+	private void renderRings() {
+		for (Ring ring : visibleRings) {
+			ring.render();
+		}
+	}
+	
 	private void drawReflections() {
 		glClear(GL_DEPTH_BUFFER_BIT | GL_STENCIL_BUFFER_BIT);
 		glColorMask(false, false, false, false);
@@ -540,20 +626,15 @@ public class Track implements Renderable {
 		Matrix mvpMatrix = GL.modelviewProjectionMatrix();
 		Viewport viewport = GL.viewport();
 		Range depthRange = GL.depthRange();
-		List<Block> blocks = visibleBlocks.stream().filter(block -> block.iteration() > index.integer - range && block.iteration() < index.integer + range).filter(block -> {
-			if (Math.abs(block.iteration() - index.integer) < indexRate * 0.15) return true; // render reflection of close blocks always
-			Vector side = block.placement().side().multiplied(block.width());
-			Vector leftScreenspaceVector = GL.screenspace(block.placement().position().plus(side), mvpMatrix, viewport, depthRange);
-			Vector rightScreenspaceVector = GL.screenspace(block.placement().position().plus(side.negated()), mvpMatrix, viewport, depthRange);
-			return isVisible(viewport, leftScreenspaceVector, rightScreenspaceVector);
-		}).collect(Collectors.toList());
-		List<Ring> rings = visibleRings.stream().filter(ring -> ring.iteration() > index.integer - range && ring.iteration() < index.integer + range).filter(ring -> {
-			if (Math.abs(ring.iteration() - index.integer) < indexRate * 0.15) return true; // render reflection of close rings always
-			Vector side = ring.placement().side().multiplied(ring.width());
-			Vector leftScreenspaceVector = GL.screenspace(ring.placement().position().plus(side), mvpMatrix, viewport, depthRange);
-			Vector rightScreenspaceVector = GL.screenspace(ring.placement().position().plus(side.negated()), mvpMatrix, viewport, depthRange);
-			return isVisible(viewport, leftScreenspaceVector, rightScreenspaceVector);
-		}).collect(Collectors.toList());
+		reflectedBlocks.clear();
+		for (int i = 0; i < visibleBlocks.size(); i++) {
+			Block block = visibleBlocks.get(i);
+			if (isReflected(block.iteration(), block.placement(), block.width(), range, mvpMatrix, viewport, depthRange)) reflectedBlocks.add(block);
+		}
+		reflectedRings.clear();
+		for (Ring ring : visibleRings) {
+			if (isReflected(ring.iteration(), ring.placement(), ring.width(), range, mvpMatrix, viewport, depthRange)) reflectedRings.add(ring);
+		}
 		
 		// render objects according to stencil buffer
 		glClear(GL_DEPTH_BUFFER_BIT);
@@ -561,28 +642,26 @@ public class Track implements Renderable {
 		glStencilFunc(GL_EQUAL, 1, 0xffffffff);
 		glStencilOp(GL_KEEP, GL_KEEP, GL_KEEP);
 		
-		// create rotation to flip objects horizontally
-		Rotation flip = new Rotation().z(180);
-		
 		// draw ring reflections
 		if (GameScene.rings) {
 			glDisable(GL_CULL_FACE);
-			rings.forEach(ring -> {
+			for (int i = 0; i < reflectedRings.size(); i++) {
+				Ring ring = reflectedRings.get(i);
 				double distance = Math.abs(ring.iteration() - index.integer);
 				double alpha = Arithmetic.scaleLinear(distance, 1, 0, 0, range);
 				final Color color = ring.color();
 				ring.color(color.alpha(alpha));
 				ring.render();
 				ring.color(color);
-			});
+			}
 			glEnable(GL_CULL_FACE);
 		}
 		
 		// draw block reflections
-		blocks.forEach(block -> {
+		for (int i = 0; i < reflectedBlocks.size(); i++) {
+			Block block = reflectedBlocks.get(i);
 			Placement placement = block.placement();
-			Placement originalPlacement = placement.clone();
-			placement.position(placement.position().plus(placement.up().multiplied(-2 * flightHeight)));
+			reflect(placement, flightHeight);
 			double distance = Math.abs(block.iteration() - index.integer);
 			double alpha = Arithmetic.scaleLinear(distance, 1, 0, 0, range);
 			final Color color = block.color();
@@ -591,16 +670,15 @@ public class Track implements Renderable {
 			block.model().transformations().add(flip);
 			block.render();
 			block.model().transformations().remove(flip);
-			block.placement(originalPlacement);
+			placement.position().set(reflectedPosition);
 			block.model().setTexture(Resources.getBlockTexture());
 			block.color(color);
-		});;
+		}
 		
 		// draw player reflection
 		Model model = player.model();
 		Placement placement = model.placement();
-		Placement originalPlacement = placement.clone();
-		placement.position(placement.position().plus(placement.up().multiplied(-2 * (flightHeight + model.translation().y()))));
+		reflect(placement, flightHeight + model.translation().y());
 		model.rotation().invert();
 		player.inclination().invert();
 		model.transformations().add(flip);
@@ -608,11 +686,32 @@ public class Track implements Renderable {
 		model.transformations().remove(flip);
 		player.inclination().invert();
 		model.rotation().invert();
-		model.placement(originalPlacement);
+		placement.position().set(reflectedPosition);
 		
 		glDisable(GL_STENCIL_TEST);
 	}
 	
+	/**
+	 * Returns whether the reflection of the object at the given iteration is drawn, i.e. whether it is within the given range and close or visible on screen.
+	 */
+	private boolean isReflected(int iteration, Placement placement, double width, int range, Matrix mvpMatrix, Viewport viewport, Range depthRange) {
+		if (iteration <= index.integer - range || iteration >= index.integer + range) return false;
+		if (Math.abs(iteration - index.integer) < indexRate * 0.15) return true; // render reflection of close objects always
+		Vector side = placement.side().multiply(width);
+		Vector leftScreenspaceVector = GL.screenspace(placement.position().plus(side), mvpMatrix, viewport, depthRange);
+		Vector rightScreenspaceVector = GL.screenspace(placement.position().minus(side), mvpMatrix, viewport, depthRange);
+		return isVisible(viewport, leftScreenspaceVector, rightScreenspaceVector);
+	}
+	
+	/**
+	 * Mirrors the position of the placement below the track surface, which is the given height below it. The original position is kept to be restored afterwards.
+	 */
+	private void reflect(Placement placement, double height) {
+		reflectedPosition.set(placement.position());
+		Vector up = placement.up();
+		placement.position().add(up.x() * -2 * height, up.y() * -2 * height, up.z() * -2 * height);
+	}
+	
 	// TODO improve dat performance thief
 	private boolean isVisible(Viewport viewport, Vector leftScreenspaceVector, Vector rightScreenspaceVector) {
 		boolean leftVisible = viewport.contains(leftScreenspaceVector);
@@ -658,27 +757,67 @@ public class Track implements Renderable {
 		return indexRate;
 	}
 	
+	/**
+	 * Returns the fractional spline index at the given time, depending on the parameterization of the track.
+	 */
+	public double getPosition(double time) {
+		return parameterization.index(spline, time, getDuration());
+	}
+	
+	/**
+	 * Returns the time at which the given fractional spline index is passed, depending on the parameterization of the track.
+	 */
+	public double getTime(double index) {
+		return parameterization.time(spline, index, getDuration());
+	}
+	
+	/**
+	 * Returns the analysis iteration played at the given time. Analysis results are indexed by these iterations, which differ from spline indices as soon as the
+	 * analyzation iterations overlap.
+	 */
+	public int getFrame(double time) {
+		int frame = (int) (audio.getIterationRate() * time);
+		return Math.max(0, Math.min(frame, audio.getIterationCount() - 1));
+	}
+	
+	/**
+	 * Returns the analysis iteration played when passing the given spline index.
+	 */
+	public int getFrameAtIndex(double index) {
+		return getFrame(getTime(index));
+	}
+	
 	public Index getIndex(double time) {
-		double index = time * indexRate();
+		return getIndex(time, new Index(0, 0));
+	}
+	
+	/**
+	 * Writes the index at the given time into the given index.
+	 */
+	public Index getIndex(double time, Index out) {
+		double index = getPosition(time);
 		if (index >= spline.size() - 1) index = spline.size() - 2;
 		int integer = (int) index;
-		double fraction = index - integer;
-		return new Index(integer, fraction);
+		return out.set(integer, index - integer);
 	}
 	
 	public Placement getPlacement(double time) {
-		return getPlacement(getIndex(time), false, 0);
+		return getPlacement(time, new Placement());
 	}
 	
-	private Placement getPlacement(Index index, boolean interpolated, int rail) {
-		Vector current = spline.get(index.integer);
-		Vector next = spline.get(index.integer + 1);
-		Vector direction = next.minus(current);
-		Vector up = Vector.Y;
-		Vector position = current.plus(direction.multiplied(interpolated ? index.fraction : 0.5)).plus(up.multiplied(flightHeight));
-		Placement placement = new Placement().position(position).direction(direction).up(up);
-		if (rail != 0) placement.position().add(placement.side().multiplied(Math.signum(rail) * railWidth()));
-		return placement;
+	/**
+	 * Writes the placement in the middle of the spline segment at the given time into the given placement.
+	 */
+	public Placement getPlacement(double time, Placement out) {
+		double index = Math.min(getPosition(time), spline.size() - 2);
+		return getPlacement((int) index, 0.5, 0, out);
+	}
+	
+	/**
+	 * Writes the placement at the given fraction of the spline segment on the given rail into the given placement.
+	 */
+	private Placement getPlacement(int index, double fraction, int rail, Placement out) {
+		return spline.placementAt(index, fraction, flightHeight, Math.signum(rail) * railWidth(), out);
 	}
 	
 	public AnalyzedAudio getAudio() {
@@ -693,11 +832,25 @@ public class Track implements Renderable {
 		return smoothing;
 	}
 	
-	public List<Vector> spline() {
+	public Parameterization getParameterization() {
+		return parameterization;
+	}
+	
+	public SplinePath spline() {
 		return spline;
 	}
 	
+	/**
+	 * Returns all blocks, sorted by iteration.
+	 */
 	public List<Block> getBlocks() {
+		return blocks.items();
+	}
+	
+	/**
+	 * Returns the blocks indexed by iteration, for range queries.
+	 */
+	public IterationIndex<Block> getBlockIndex() {
 		return blocks;
 	}
 	
@@ -740,15 +893,73 @@ public class Track implements Renderable {
 		return numberOfObstacles;
 	}
 	
+	/**
+	 * Mapping of the playback time to the position on the spline.
+	 */
+	public static enum Parameterization {
+		/** Advances a constant number of spline points per second, which are spaced unevenly, so the speed varies. */
+		Indexed {
+			@Override
+			public double index(SplinePath spline, double time, double duration) {
+				return time * (spline.size() / duration);
+			}
+			
+			@Override
+			public double time(SplinePath spline, double index, double duration) {
+				return index * (duration / spline.size());
+			}
+		},
+		/** Advances a constant distance per second, by looking up the spline index in the arc length table. */
+		ArcLength {
+			@Override
+			public double index(SplinePath spline, double time, double duration) {
+				return spline.indexAt(time / duration * spline.length());
+			}
+			
+			@Override
+			public double time(SplinePath spline, double index, double duration) {
+				double length = spline.length();
+				return length > 0 ? spline.distanceAt(index) / length * duration : 0;
+			}
+		};
+		
+		/**
+		 * Returns the fractional spline index at the given time of a track with the given duration.
+		 */
+		public abstract double index(SplinePath spline, double time, double duration);
+		
+		/**
+		 * Returns the time at which the given fractional spline index is passed on a track with the given duration, the inverse of
+		 * {@link #index(SplinePath, double, double)}.
+		 */
+		public abstract double time(SplinePath spline, double index, double duration);
+		
+		/**
+		 * Returns the parameterization with the given name, ignoring case, or {@link #Indexed} if there is none.
+		 */
+		public static Parameterization forName(String name) {
+			for (Parameterization parameterization : values()) {
+				if (parameterization.name().equalsIgnoreCase(name)) return parameterization;
+			}
+			Log.warning("Unknown track parameterization \"%s\", using %s instead.", name, Indexed);
+			return Indexed;
+		}
+	}
+	
 	public class Index {
 		
-		public final int integer;
-		public final double fraction;
+		public int integer;
+		public double fraction;
 		
 		public Index(int integer, double fraction) {
+			set(integer, fraction);
+		}
+		
+		public Index set(int integer, double fraction) {
 			if (integer > spline.size() - 2) integer = spline.size() - 2;
 			this.integer = integer;
 			this.fraction = fraction;
+			return this;
 		}
 		
 		@Override
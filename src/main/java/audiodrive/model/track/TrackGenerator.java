@@ -5,8 +5,9 @@ import java.util.List;
 
 import audiodrive.AudioDrive;
 import audiodrive.audio.AnalyzedAudio;
+import audiodrive.audio.AnalyzationData;
 import audiodrive.audio.AnalyzedChannel;
-import audiodrive.model.geometry.Vector;
+import audiodrive.audio.BeatGrid;
 import audiodrive.model.track.interpolation.CatmullRom;
 import audiodrive.utilities.Arithmetic;
 import audiodrive.utilities.Log;
@@ -26,28 +27,35 @@ public class TrackGenerator {
 		Log.info("Generating track...");
 		Log.debug("Generating \"%s\"...", audio.getName());
 		int smoothing = Math.max(10, AudioDrive.Settings.getInteger("track.smoothing"));
+		Track.Parameterization parameterization = Track.Parameterization.forName(AudioDrive.Settings.get("track.parameterization"));
 		AnalyzedChannel mixed = audio.getMix();
 		AnalyzedChannel left = audio.getChannel(0);
 		AnalyzedChannel right = audio.getChannel(1);
+		// number of analyzed iterations per track step, greater than one if the iterations overlap
+		double density = (double) audio.getIteration() / audio.getHop();
+		int steps = (int) (audio.getIterationCount() / density);
 		
-		// generate track vectorinates based on audio analyzation results
-		List<Vector> vectorinates = new ArrayList<>();
+		// generate track vectorinates based on audio analyzation results, packed as x, y and z coordinates
+		double[] vectorinates = new double[3 * ((steps + smoothing - 1) / smoothing)];
 		double x = 0;
 		double y = 0;
 		double z = 0;
-		for (int iteration = 0; iteration < audio.getIterationCount(); iteration++) {
+		for (int iteration = 0; iteration < steps; iteration++) {
 			if (iteration % smoothing == 0) {
-				vectorinates.add(new Vector(x, y, z));
+				int index = 3 * (iteration / smoothing);
+				vectorinates[index] = x;
+				vectorinates[index + 1] = y;
+				vectorinates[index + 2] = z;
 			}
-			double direction = right.getSpectralSum().getClamped(iteration) - left.getSpectralSum().getClamped(iteration);
+			double direction = average(right.getSpectralSum(), iteration, density) - average(left.getSpectralSum(), iteration, density);
 			x += direction * deltaX;
-			y += (0.5 - mixed.getThreshold().getClamped(iteration)) * deltaY;
+			y += (0.5 - average(mixed.getThreshold(), iteration, density)) * deltaY;
 			z += deltaZ;
 		}
-		Log.debug(vectorinates.size() + " vectorinates");
+		Log.debug(vectorinates.length / 3 + " vectorinates");
 		
 		// generate spline by interpolating vectorinates
-		List<Vector> spline = CatmullRom.interpolate(vectorinates, smoothing, CatmullRom.Type.Centripetal);
+		SplinePath spline = new SplinePath(CatmullRom.interpolate(vectorinates, smoothing, CatmullRom.Type.Centripetal));
 		double iterationRate = spline.size() / audio.getDuration();
 		Log.debug(spline.size() + " spline points");
 		
@@ -57,31 +65,64 @@ public class TrackGenerator {
 		// no blocks within 1 second from start and end
 		int offset = (int) Math.round(iterationRate);
 		// set minimum distance between successive blocks to 0.2 seconds
-		int minumumDistance = (int) Math.round(iterationRate * 0.2);
+		int minumumDistance = Math.max(1, (int) Math.round(iterationRate * 0.2));
+		// snap blocks to subdivisions of the beats if enabled, unless no tempo could be estimated
+		int subdivisions = AudioDrive.Settings.getInteger("track.quantization");
+		BeatGrid beatGrid = audio.getBeatGrid();
+		boolean quantize = subdivisions > 0 && beatGrid.getConfidence() > 0;
+		if (quantize) Log.debug("Quantizing blocks to %s subdivisions of %s beats", subdivisions, beatGrid);
 		for (int iteration = offset; iteration < spline.size() - offset; iteration++) {
-			double intensity = mixed.getSpectralSum().getClamped(iteration);
+			double intensity = average(mixed.getSpectralSum(), iteration, density);
 			double calmness = 1.0 - intensity;
-			double leftFlux = left.getSpectralFlux().getClamped(iteration);
-			double rightFlux = right.getSpectralFlux().getClamped(iteration);
-			double leftPeak = left.getPeaks().getClamped(iteration);
-			double rightPeak = right.getPeaks().getClamped(iteration);
+			double leftFlux = maximum(left.getSpectralFlux(), iteration, density);
+			double rightFlux = maximum(right.getSpectralFlux(), iteration, density);
+			double leftPeak = maximum(left.getPeaks(), iteration, density);
+			double rightPeak = maximum(right.getPeaks(), iteration, density);
 			double leftIntensity = leftFlux + leftPeak;
 			double rightIntensity = rightFlux + rightPeak;
 			double threshold = 0.15 + calmness * 0.3; // calm music -> fewer blocks
 			if (leftIntensity < threshold && rightIntensity < threshold) continue;
+			// quantization and parameterization are monotonic, so the blocks stay sorted by iteration
+			double time = quantize ? beatGrid.quantize(iteration / iterationRate, subdivisions) : iteration / iterationRate;
+			int placement = (int) Math.round(parameterization.index(spline, time, audio.getDuration()));
+			if (placement < offset || placement >= spline.size() - offset) continue;
 			int rail = (int) Math.signum(Arithmetic.significance(leftIntensity - rightIntensity, 0.05));
 			int r = rail + 1;
-			if (previous[r] != null && iteration - previous[r].iteration() < minumumDistance) continue;
+			if (previous[r] != null && placement - previous[r].iteration() < minumumDistance) continue;
 			threshold = 0.5 + intensity * 0.1; // intense music -> more obstacles, fewer collectables
 			int collidables = 0;
 			for (int i = 0; i < previous.length; i++)
 				if (i != r && previous[i] != null && !previous[i].isCollectable()) collidables++;
 			boolean collectable = collidables == 2 ? true : (leftIntensity > threshold || rightIntensity > threshold);
-			blocks.add(previous[r] = new Block(collectable, iteration, rail));
+			blocks.add(previous[r] = new Block(collectable, placement, rail));
 		}
 		Log.debug(blocks.size() + " blocks");
 		
 		Log.debug("Generation complete");
-		return new Track(audio, spline, blocks, smoothing);
+		return new Track(audio, spline, blocks, smoothing, parameterization);
+	}
+	
+	/**
+	 * Returns the average clamped value of the analyzed iterations belonging to the given track step.
+	 */
+	private static double average(AnalyzationData data, int step, double density) {
+		int from = Math.min((int) (step * density), data.size() - 1);
+		int to = Math.max(from + 1, Math.min((int) ((step + 1) * density), data.size()));
+		double sum = 0;
+		for (int i = from; i < to; i++)
+			sum += data.getClamped(i);
+		return sum / (to - from);
+	}
+	
+	/**
+	 * Returns the maximum clamped value of the analyzed iterations belonging to the given track step, so that short peaks aren't skipped.
+	 */
+	private static double maximum(AnalyzationData data, int step, double density) {
+		int from = Math.min((int) (step * density), data.size() - 1);
+		int to = Math.max(from + 1, Math.min((int) ((step + 1) * density), data.size()));
+		double maximum = data.getClamped(from);
+		for (int i = from + 1; i < to; i++)
+			maximum = Math.max(maximum, data.getClamped(i));
+		return maximum;
 	}
 }
@@ -2,11 +2,15 @@ package audiodrive.model.track.interpolation;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import audiodrive.model.geometry.Vector;
 
 public class CatmullRom {
 	
+	/** Number of segments from which the packed interpolation runs in parallel. */
+	private static final int ParallelThreshold = 256;
+	
 	/**
 	 * This method will calculate the Catmull-Rom interpolation curve, returning it as a list of Vector Vectorinate objects. This method in particular adds the first and last
 	 * control points which are not visible, but required for calculating the spline.
@@ -176,6 +180,157 @@ public class CatmullRom {
 		return C12;
 	}
 	
+	/**
+	 * Calculates the Catmull-Rom interpolation curve of packed points, like {@link #interpolate(List, int, Type)} does.
+	 *
+	 * @param points The interleaved x, y and z coordinates of the points to interpolate.
+	 * @return The interleaved x, y and z coordinates of the interpolated points.
+	 */
+	public static double[] interpolate(double[] points, int pointsPerSegment, Type curveType) {
+		double[] result = new double[3 * size(points.length / 3, pointsPerSegment)];
+		interpolate(points, pointsPerSegment, curveType, (index, x, y, z) -> {
+			result[3 * index] = x;
+			result[3 * index + 1] = y;
+			result[3 * index + 2] = z;
+		});
+		return result;
+	}
+	
+	/**
+	 * Calculates the Catmull-Rom interpolation curve of packed points with single precision output, e.g. for vertex buffers.
+	 *
+	 * @see #interpolate(double[], int, Type)
+	 */
+	public static float[] interpolateFloats(double[] points, int pointsPerSegment, Type curveType) {
+		float[] result = new float[3 * size(points.length / 3, pointsPerSegment)];
+		interpolate(points, pointsPerSegment, curveType, (index, x, y, z) -> {
+			result[3 * index] = (float) x;
+			result[3 * index + 1] = (float) y;
+			result[3 * index + 2] = (float) z;
+		});
+		return result;
+	}
+	
+	/**
+	 * Returns the number of interpolated points of the given number of points.
+	 */
+	public static int size(int count, int pointsPerSegment) {
+		if (count < 3) return count;
+		return (count - 1) * (pointsPerSegment - 1) + 1;
+	}
+	
+	/**
+	 * Interpolates the segments in parallel. The knot spacing of the control points is calculated once, then every segment writes its points at its own offset of the
+	 * output, so the segments don't depend on each other.
+	 */
+	private static void interpolate(double[] points, int pointsPerSegment, Type curveType, Output output) {
+		if (points.length % 3 != 0) throw new IllegalArgumentException("The number of coordinates must be a multiple of three.");
+		if (pointsPerSegment < 2) {
+			throw new RuntimeException("The pointsPerSegment parameter must be >= 2, since 2 points is just the linear segment.");
+		}
+		int count = points.length / 3;
+		if (count < 3) {
+			for (int i = 0; i < count; i++) {
+				output.set(i, points[3 * i], points[3 * i + 1], points[3 * i + 2]);
+			}
+			return;
+		}
+		double[] controls = controls(points);
+		// spacing of successive control points, the difference of their knots
+		double[] spacing = new double[count + 1];
+		for (int i = 0; i < spacing.length; i++) {
+			double dx = controls[3 * i + 3] - controls[3 * i];
+			double dy = controls[3 * i + 4] - controls[3 * i + 1];
+			double dz = controls[3 * i + 5] - controls[3 * i + 2];
+			double squared = dx * dx + dy * dy + dz * dz;
+			switch (curveType) {
+			case Centripetal:
+				spacing[i] = Math.sqrt(Math.sqrt(squared));
+				break;
+			case Chordal:
+				spacing[i] = Math.sqrt(squared);
+				break;
+			default:
+				spacing[i] = 1;
+				break;
+			}
+		}
+		IntStream segments = IntStream.range(0, count - 1);
+		if (count - 1 >= ParallelThreshold) segments = segments.parallel();
+		segments.forEach(segment -> segment(controls, spacing, segment, pointsPerSegment, output));
+	}
+	
+	/**
+	 * Returns the points with an additional control point before the first and after the last one, see {@link #interpolate(List, int, Type)}.
+	 */
+	private static double[] controls(double[] points) {
+		int n = points.length;
+		double[] controls = new double[n + 6];
+		System.arraycopy(points, 0, controls, 3, n);
+		boolean isClosed = points[0] == points[n - 3] && points[1] == points[n - 2] && points[2] == points[n - 1];
+		for (int i = 0; i < 3; i++) {
+			if (isClosed) {
+				controls[i] = points[n - 6 + i];
+				controls[n + 3 + i] = points[3 + i];
+			} else {
+				controls[i] = 2 * points[i] - points[3 + i];
+				controls[n + 3 + i] = 2 * points[n - 3 + i] - points[n - 6 + i];
+			}
+		}
+		return controls;
+	}
+	
+	/**
+	 * Interpolates the segment between the control points with index segment + 1 and segment + 2. The first point is only written for the first segment, since it's the last
+	 * point of the previous segment otherwise.
+	 */
+	private static void segment(double[] controls, double[] spacing, int segment, int pointsPerSegment, Output output) {
+		int c = 3 * segment;
+		double t1 = spacing[segment];
+		double t2 = t1 + spacing[segment + 1];
+		double t3 = t2 + spacing[segment + 2];
+		int steps = pointsPerSegment - 1;
+		int offset = segment * steps;
+		if (segment == 0) output.set(offset, controls[c + 3], controls[c + 4], controls[c + 5]);
+		for (int i = 1; i < steps; i++) {
+			double t = t1 + (i * (t2 - t1)) / steps;
+			// the weights of the pyramid are the same for all coordinates
+			double a0 = (t1 - t) / t1;
+			double a1 = t / t1;
+			double b1 = (t2 - t) / (t2 - t1);
+			double b2 = (t - t1) / (t2 - t1);
+			double c2 = (t3 - t) / (t3 - t2);
+			double c3 = (t - t2) / (t3 - t2);
+			double d0 = (t2 - t) / t2;
+			double d1 = t / t2;
+			double e0 = (t3 - t) / (t3 - t1);
+			double e1 = (t - t1) / (t3 - t1);
+			double[] p = controls;
+			double x01 = p[c] * a0 + p[c + 3] * a1;
+			double x12 = p[c + 3] * b1 + p[c + 6] * b2;
+			double x23 = p[c + 6] * c2 + p[c + 9] * c3;
+			double y01 = p[c + 1] * a0 + p[c + 4] * a1;
+			double y12 = p[c + 4] * b1 + p[c + 7] * b2;
+			double y23 = p[c + 7] * c2 + p[c + 10] * c3;
+			double z01 = p[c + 2] * a0 + p[c + 5] * a1;
+			double z12 = p[c + 5] * b1 + p[c + 8] * b2;
+			double z23 = p[c + 8] * c2 + p[c + 11] * c3;
+			double x = (x01 * d0 + x12 * d1) * b1 + (x12 * e0 + x23 * e1) * b2;
+			double y = (y01 * d0 + y12 * d1) * b1 + (y12 * e0 + y23 * e1) * b2;
+			double z = (z01 * d0 + z12 * d1) * b1 + (z12 * e0 + z23 * e1) * b2;
+			output.set(offset + i, x, y, z);
+		}
+		output.set(offset + steps, controls[c + 6], controls[c + 7], controls[c + 8]);
+	}
+	
+	/**
+	 * Receives the interpolated points.
+	 */
+	@FunctionalInterface
+	private static interface Output {
+		void set(int index, double x, double y, double z);
+	}
+	
 	public enum Type {
 		Uniform, Chordal, Centripetal
 	}
@@ -0,0 +1,84 @@
+package audiodrive.model.track.interpolation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import audiodrive.model.geometry.Vector;
+import audiodrive.utilities.Log;
+import audiodrive.utilities.Stopwatch;
+
+/**
+ * Compares the list based Catmull-Rom interpolation with the packed one, which runs in parallel, on random control points shaped like a generated track. Reports the fastest
+ * run of each and the maximum deviation of their results.
+ */
+public class CatmullRomBenchmark {
+	
+	/** Number of runs of each implementation before measuring, to let the JIT compile them. */
+	private static final int WarmUpRuns = 5;
+	/** Number of measured runs of each implementation, the fastest of them is reported. */
+	private static final int Runs = 10;
+	
+	private CatmullRomBenchmark() {
+		throw new IllegalStateException("This class shall not be instantiated.");
+	}
+	
+	/**
+	 * Takes the number of control points and the points per segment as optional arguments.
+	 */
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int pointsPerSegment = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		CatmullRom.Type type = CatmullRom.Type.Centripetal;
+		Random random = new Random(0);
+		List<Vector> vectors = new ArrayList<>(count);
+		double[] points = new double[3 * count];
+		double x = 0;
+		double y = 0;
+		for (int i = 0; i < count; i++) {
+			vectors.add(new Vector(x, y, i * pointsPerSegment));
+			points[3 * i] = x;
+			points[3 * i + 1] = y;
+			points[3 * i + 2] = i * pointsPerSegment;
+			x += random.nextGaussian() * pointsPerSegment;
+			y += random.nextGaussian() * pointsPerSegment * 0.5;
+		}
+		Log.info("%d control points, %d points per segment, %d interpolated points", count, pointsPerSegment, CatmullRom.size(count, pointsPerSegment));
+		List<Vector> reference = CatmullRom.interpolate(vectors, pointsPerSegment, type);
+		double[] packed = CatmullRom.interpolate(points, pointsPerSegment, type);
+		float[] floats = CatmullRom.interpolateFloats(points, pointsPerSegment, type);
+		double deviation = 0;
+		double floatDeviation = 0;
+		for (int i = 0; i < reference.size(); i++) {
+			Vector vector = reference.get(i);
+			deviation = Math.max(deviation, Math.abs(vector.x() - packed[3 * i]));
+			deviation = Math.max(deviation, Math.abs(vector.y() - packed[3 * i + 1]));
+			deviation = Math.max(deviation, Math.abs(vector.z() - packed[3 * i + 2]));
+			floatDeviation = Math.max(floatDeviation, Math.abs(vector.x() - floats[3 * i]));
+			floatDeviation = Math.max(floatDeviation, Math.abs(vector.y() - floats[3 * i + 1]));
+			floatDeviation = Math.max(floatDeviation, Math.abs(vector.z() - floats[3 * i + 2]));
+		}
+		Log.info("maximum deviation %.3g (double), %.3g (float), %d and %d points", deviation, floatDeviation, reference.size(), packed.length / 3);
+		report("list", measure(() -> CatmullRom.interpolate(vectors, pointsPerSegment, type)));
+		report("packed", measure(() -> CatmullRom.interpolate(points, pointsPerSegment, type)));
+		report("packed float", measure(() -> CatmullRom.interpolateFloats(points, pointsPerSegment, type)));
+	}
+	
+	private static double measure(Runnable interpolation) {
+		for (int run = 0; run < WarmUpRuns; run++) {
+			interpolation.run();
+		}
+		double seconds = Double.POSITIVE_INFINITY;
+		for (int run = 0; run < Runs; run++) {
+			Stopwatch stopwatch = new Stopwatch().start();
+			interpolation.run();
+			seconds = Math.min(seconds, stopwatch.stop());
+		}
+		return seconds;
+	}
+	
+	private static void report(String name, double seconds) {
+		Log.info("%-16s %10.3f milliseconds", name, seconds * 1000);
+	}
+	
+}
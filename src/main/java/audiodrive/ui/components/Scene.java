@@ -4,11 +4,14 @@ import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
 import static org.lwjgl.opengl.GL11.glClear;
 
 import java.awt.GraphicsDevice;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.lwjgl.input.Keyboard;
 
+import audiodrive.audio.AnalyzedChannel;
 import audiodrive.ui.control.Input;
 
 public class Scene implements Input.Observer {
@@ -105,6 +108,13 @@ public class Scene implements Input.Observer {
 	 */
 	protected void exiting() {}
 	
+	/**
+	 * Returns the features of the analyzed audio this scene reads, so that they are calculated during analyzation instead of on first access.
+	 */
+	public Set<AnalyzedChannel.Feature> getRequiredFeatures() {
+		return Collections.emptySet();
+	}
+	
 	public final void exit() {
 		exit(null);
 	}
@@ -5,7 +5,6 @@ import static org.lwjgl.opengl.GL11.*;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import audiodrive.AudioDrive;
 import audiodrive.audio.AnalyzedAudio;
@@ -23,7 +22,6 @@ import audiodrive.ui.components.Text.Alignment;
 import audiodrive.ui.components.Window;
 import audiodrive.ui.scenes.GameScene;
 import audiodrive.ui.scenes.GameScene.State;
-import audiodrive.utilities.Arithmetic;
 import audiodrive.utilities.Format;
 import audiodrive.utilities.Memory;
 import audiodrive.utilities.Memory.Unit;
@@ -89,7 +87,7 @@ public class GameOverlay extends Overlay {
 	
 	public void update() {
 		trackOverview.updatePlayerPosition(scene.getTrack().index());
-		List<Block> passed = scene.getTrack().getBlocks().stream().filter(block -> block.iteration() <= scene.getTrack().index().integer).collect(Collectors.toList());
+		List<Block> passed = scene.getTrack().getBlockIndex().range(Integer.MIN_VALUE, scene.getTrack().index().integer);
 		int passedCollectables = (int) passed.stream().filter(Block::isCollectable).count();
 		int passedObstacles = passed.size() - passedCollectables;
 		final int framerate = Scene.getFramerate();
@@ -139,7 +137,7 @@ public class GameOverlay extends Overlay {
 		float multiplier = 3;
 		float limit = 0.15f;
 		spectrumColor = scene.getTrack().getColorAtIndex(scene.getTrack().index().integer);
-		int iteration = Arithmetic.clamp((int) (audio.getIterationRate() * scene.playtime()), 0, audio.getIterationCount() - 1);
+		int iteration = scene.getTrack().getFrame(scene.playtime());
 		for (int band = 0; band < bands; band++) {
 			double left = leftChannel.clamp(leftChannel.getBands().get(band).get(iteration)) * multiplier;
 			double right = rightChannel.clamp(rightChannel.getBands().get(band).get(iteration)) * multiplier;
@@ -249,8 +247,7 @@ public class GameOverlay extends Overlay {
 	private void drawPeaks() {
 		Track track = scene.getTrack();
 		AnalyzedAudio audio = track.getAudio();
-		int iteration = track.index().integer;
-		if (iteration >= audio.getIterationCount()) return;
+		int iteration = track.getFrame(scene.playtime());
 		double width = scene.getWidth();
 		double height = scene.getHeight();
 		float mixedPeak = audio.getMix().getPeaks().getClamped(iteration);
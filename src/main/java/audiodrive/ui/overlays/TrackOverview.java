@@ -8,7 +8,7 @@ import java.util.List;
 import org.lwjgl.opengl.Display;
 
 import audiodrive.model.geometry.Color;
-import audiodrive.model.geometry.Vector;
+import audiodrive.model.track.SplinePath;
 import audiodrive.model.track.Track;
 import audiodrive.model.track.Track.Index;
 import audiodrive.utilities.Arithmetic;
@@ -32,7 +32,7 @@ public class TrackOverview {
 	private Color color;
 	
 	public TrackOverview(Track track) {
-		final List<Vector> vectors = track.spline();
+		final SplinePath spline = track.spline();
 		color = track.color().inverse();
 		
 		rawCoordinates = new ArrayList<Double>();
@@ -40,9 +40,9 @@ public class TrackOverview {
 		double maxValue = 0;
 		double minValue = 0;
 		
-		for (Vector vector : vectors) {
+		for (int i = 0; i < spline.size(); i++) {
 			
-			final double value = vector.y();
+			final double value = spline.y(i);
 			
 			if (value > maxValue) {
 				maxValue = value;
@@ -5,6 +5,7 @@ import static org.lwjgl.opengl.GL11.*;
 import org.lwjgl.input.Keyboard;
 
 import audiodrive.AudioDrive;
+import audiodrive.audio.AnalysisPrefetcher;
 import audiodrive.audio.AnalyzedAudio;
 import audiodrive.audio.AudioAnalyzer;
 import audiodrive.ui.components.Camera;
@@ -29,12 +30,13 @@ public class AnalyzationScene extends Scene {
 		title = new Text("Analyzing audio...").setFont(AudioDrive.Font).setSize(48).setPosition(20, 20);
 		background = new Overlay().shader(new ShaderProgram("shaders/Default.vs", "shaders/Analyzation.fs"));
 		Camera.overlay(getWidth(), getHeight());
-		// limit duration, to prevent memory issues
-		if (AudioDrive.getSelectedAudio().getDuration() > AudioDrive.Settings.getDouble("audio.duration.limit") * 60.0) {
-			showErrorDialog();
+		// continue the background analyzation of the selected audio, if it's in progress
+		analyzer = AnalysisPrefetcher.Default.claim(AudioDrive.getSelectedAudio());
+		if (analyzer != null) {
+			Log.debug("Continuing prefetched analyzation.");
 			return;
 		}
-		analyzer = new AudioAnalyzer();
+		analyzer = new AudioAnalyzer().setFeatures(next().getRequiredFeatures());
 		Thread thread = new Thread(() -> {
 			analyzer.analyze(AudioDrive.getSelectedAudio());
 		});
@@ -55,17 +57,23 @@ public class AnalyzationScene extends Scene {
 				return;
 			}
 			AudioDrive.setAnalyzedAudio(results);
-			switch (AudioDrive.getAction()) {
-			case None:
-				Scene.get(MenuScene.class).enter();
-				break;
-			case Play:
-				Scene.get(GenerationScene.class).enter();
-				break;
-			case Visualize:
-				Scene.get(VisualizationScene.class).enter();
-				break;
-			}
+			next().enter();
+		} else {
+			title.setText(String.format("Analyzing audio... %.0f%%", analyzer.getProgress() * 100));
+		}
+	}
+	
+	/**
+	 * Returns the scene following the analyzation, depending on the selected action.
+	 */
+	private Scene next() {
+		switch (AudioDrive.getAction()) {
+		case Play:
+			return Scene.get(GenerationScene.class);
+		case Visualize:
+			return Scene.get(VisualizationScene.class);
+		default:
+			return Scene.get(MenuScene.class);
 		}
 	}
 	
@@ -7,6 +7,7 @@ import org.lwjgl.input.Mouse;
 
 import audiodrive.AudioDrive;
 import audiodrive.Resources;
+import audiodrive.audio.AnalysisPrefetcher;
 import audiodrive.audio.AudioResource;
 import audiodrive.audio.Playback;
 import audiodrive.model.Player;
@@ -94,13 +95,14 @@ public class GameScene extends Scene {
 		player.model().scale(0.05);
 		overlay = new GameOverlay(this);
 		background = new GameBackground(this);
-		playback = new Playback(track.getAudio().getResource()).setVolume(AudioDrive.Settings.getDouble("music.volume"));
+		playback = new Playback(track.getAudio()).setVolume(AudioDrive.Settings.getDouble("music.volume"));
 	}
 	
 	@Override
 	protected void entering() {
 		Log.info("Starting game...");
 		Log.debug("Playing \"%s\"...", track.getAudio().getName());
+		AnalysisPrefetcher.Default.pause();
 		translation.reset();
 		rotation = 0;
 		time = 0;
@@ -221,6 +223,7 @@ public class GameScene extends Scene {
 		Mouse.setGrabbed(false);
 		playback.stop();
 		playback = null;
+		AnalysisPrefetcher.Default.resume();
 		startCameraPath = null;
 		particles2D = null;
 		overlay = null;
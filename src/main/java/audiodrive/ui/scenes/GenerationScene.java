@@ -2,6 +2,7 @@ package audiodrive.ui.scenes;
 
 import static org.lwjgl.opengl.GL11.*;
 
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.lwjgl.LWJGLException;
@@ -9,6 +10,7 @@ import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.SharedDrawable;
 
 import audiodrive.AudioDrive;
+import audiodrive.audio.AnalyzedChannel;
 import audiodrive.model.track.TrackGenerator;
 import audiodrive.ui.components.Camera;
 import audiodrive.ui.components.Overlay;
@@ -24,6 +26,14 @@ public class GenerationScene extends Scene {
 	private SharedDrawable drawable;
 	private Thread thread;
 	
+	/**
+	 * The track generator and the game read all features.
+	 */
+	@Override
+	public Set<AnalyzedChannel.Feature> getRequiredFeatures() {
+		return AnalyzedChannel.Feature.all();
+	}
+	
 	@Override
 	public void entering() {
 		try {
@@ -17,6 +17,7 @@ import audiodrive.AudioDrive.Action;
 import audiodrive.Resources;
 import audiodrive.audio.AudioInfo;
 import audiodrive.audio.AudioResource;
+import audiodrive.audio.SfxMixer;
 import audiodrive.model.geometry.Vector;
 import audiodrive.model.geometry.transform.Rotation;
 import audiodrive.model.loader.Model;
@@ -58,8 +59,8 @@ public class MenuScene extends Scene implements ItemListener {
 	private MenuItem exitMenuItem;
 	private Overlay background;
 	
-	private AudioResource hoverAudio;
-	private AudioResource selectAudio;
+	private SfxMixer.Effect hoverAudio;
+	private SfxMixer.Effect selectAudio;
 	
 	private boolean silentHovering = true;
 	private double volume;
@@ -94,8 +95,8 @@ public class MenuScene extends Scene implements ItemListener {
 		exitMenuItem = new MenuItem("Exit", this);
 		menu.addItem(exitMenuItem);
 		
-		hoverAudio = new AudioResource("sounds/Hover.wav");
-		selectAudio = new AudioResource("sounds/Select.wav");
+		hoverAudio = SfxMixer.Default.load(new AudioResource("sounds/Hover.wav"));
+		selectAudio = SfxMixer.Default.load(new AudioResource("sounds/Select.wav"));
 		
 		background = new Overlay().shader(new ShaderProgram("shaders/Default.vs", "shaders/Title.fs"));
 		
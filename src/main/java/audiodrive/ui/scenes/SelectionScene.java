@@ -18,9 +18,11 @@ import org.lwjgl.input.Keyboard;
 import org.lwjgl.opengl.Display;
 
 import audiodrive.AudioDrive;
+import audiodrive.audio.AnalysisPrefetcher;
 import audiodrive.audio.AnalyzedAudio;
 import audiodrive.audio.AudioInfo;
 import audiodrive.audio.AudioResource;
+import audiodrive.audio.SfxMixer;
 import audiodrive.model.geometry.Color;
 import audiodrive.ui.components.Camera;
 import audiodrive.ui.components.Overlay;
@@ -60,8 +62,8 @@ public class SelectionScene extends Scene implements ItemListener {
 	private Text titleText;
 	private Overlay background;
 	
-	private AudioResource hoverAudio;
-	private AudioResource selectAudio;
+	private SfxMixer.Effect hoverAudio;
+	private SfxMixer.Effect selectAudio;
 	private List<String> supportedFileExtensionList = Arrays.asList("mp3", "wav");
 	
 	private File rootFile = new File(AudioDrive.Settings.get("music.directory"));
@@ -137,8 +139,8 @@ public class SelectionScene extends Scene implements ItemListener {
 			rootMap.put(fci, file);
 		}
 		
-		hoverAudio = new AudioResource("sounds/Hover.wav");
-		selectAudio = new AudioResource("sounds/Select.wav");
+		hoverAudio = SfxMixer.Default.load(new AudioResource("sounds/Hover.wav"));
+		selectAudio = SfxMixer.Default.load(new AudioResource("sounds/Select.wav"));
 		Input.addObservers(rootMenu, itemMenu, continueMenu);
 	}
 	
@@ -165,6 +167,7 @@ public class SelectionScene extends Scene implements ItemListener {
 		if (listFiles == null) {
 			return;
 		}
+		AnalysisPrefetcher.Default.prefetch(Arrays.asList(listFiles));
 		
 		Arrays.stream(listFiles).sorted(Sort.comparingIsDirectory()).forEach(file -> {
 			final boolean directory = file.isDirectory();
@@ -235,6 +238,7 @@ public class SelectionScene extends Scene implements ItemListener {
 		Log.debug("An item was selected: '" + file.getName() + "'.");
 		selectedFileText.setText("File selected: '" + selectedFile.getName() + "'");
 		continueMenuItem.setDisabled(false);
+		AnalysisPrefetcher.Default.prioritize(new AudioResource(file));
 	}
 	
 	@Override
@@ -11,6 +11,8 @@ import org.lwjgl.opengl.Display;
 
 import audiodrive.AudioDrive;
 import audiodrive.audio.AudioResource;
+import audiodrive.audio.SfxMixer;
+import audiodrive.model.track.Track;
 import audiodrive.ui.components.Camera;
 import audiodrive.ui.components.Overlay;
 import audiodrive.ui.components.Scene;
@@ -37,6 +39,7 @@ public class SettingsScene extends Scene implements ItemListener {
 	private static final List<Integer> sightValues = Arrays.asList(50, 100, 150, 200, 250, 300);
 	private static final List<Double> difficultyValues = Arrays.asList(.1, .2, .3, .4, .5, .6, .7, .8, .9, .91, .92, .93, .94, .95, .96, .97, .98, .99, 1.);
 	private static final List<Integer> smoothingValues = Arrays.asList(10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 25, 30, 40, 50, 60, 70, 80, 90, 100);
+	private static final List<Track.Parameterization> parameterizationValues = Arrays.asList(Track.Parameterization.values());
 	private static final List<Double> controlValues = Arrays.asList(.5, .6, .7, .8, .9, 1., 1.2, 1.4, 1.6, 1.8, 2.0);
 	private static final List<Double> volumeValues = Arrays.asList(0., .1, .2, .3, .4, .5, .6, .7, .8, .9, 1.);
 	
@@ -61,6 +64,7 @@ public class SettingsScene extends Scene implements ItemListener {
 	private SettingsItem<Boolean> glowingObstacles;
 	private SettingsItem<Double> difficulty;
 	private SettingsItem<Integer> smoothing;
+	private SettingsItem<Track.Parameterization> parameterization;
 	private SettingsItem<Double> keyboard;
 	private SettingsItem<Double> mouse;
 	private SettingsItem<Double> interfaceVolume;
@@ -77,7 +81,7 @@ public class SettingsScene extends Scene implements ItemListener {
 	private Text inputSettingsText;
 	private Text gameSettingsText;
 	private Overlay background;
-	private AudioResource selectAudio;
+	private SfxMixer.Effect selectAudio;
 	
 	private double volume;
 	
@@ -136,6 +140,7 @@ public class SettingsScene extends Scene implements ItemListener {
 		glowingObstacles = new SettingsItem<Boolean>("Glowing Obstacles", booleanValues, width, itemHeight);
 		difficulty = new SettingsItem<Double>("Difficulty", difficultyValues, width, itemHeight);
 		smoothing = new SettingsItem<Integer>("Smoothing", smoothingValues, width, itemHeight);
+		parameterization = new SettingsItem<Track.Parameterization>("Parameterization", parameterizationValues, width, itemHeight);
 		keyboard = new SettingsItem<Double>("Keyboard Sensitivity", controlValues, width, itemHeight);
 		mouse = new SettingsItem<Double>("Mouse Sensitivity", controlValues, width, itemHeight);
 		interfaceVolume = new SettingsItem<Double>("Interface Volume", volumeValues, width, itemHeight);
@@ -164,8 +169,9 @@ public class SettingsScene extends Scene implements ItemListener {
 		inputMenu.addItem(mouse);
 		gameMenu.addItem(difficulty);
 		gameMenu.addItem(smoothing);
+		gameMenu.addItem(parameterization);
 		
-		selectAudio = new AudioResource("sounds/Select.wav");
+		selectAudio = SfxMixer.Default.load(new AudioResource("sounds/Select.wav"));
 		volume = AudioDrive.Settings.getDouble("interface.volume");
 		
 		background = new Overlay().shader(new ShaderProgram("shaders/Default.vs", "shaders/Title.fs"));
@@ -188,6 +194,7 @@ public class SettingsScene extends Scene implements ItemListener {
 		sky.setValue(AudioDrive.Settings.getBoolean("game.sky"));
 		difficulty.setValue(AudioDrive.Settings.getDouble("game.difficulty"));
 		smoothing.setValue(AudioDrive.Settings.getInteger("track.smoothing"));
+		parameterization.setValue(Track.Parameterization.forName(AudioDrive.Settings.get("track.parameterization")));
 		staticCollectableColor.setValue(AudioDrive.Settings.getBoolean("block.collectable.color.static"));
 		glowingCollectables.setValue(AudioDrive.Settings.getBoolean("block.collectable.glowing"));
 		staticObstacleColor.setValue(AudioDrive.Settings.getBoolean("block.obstacle.color.static"));
@@ -263,6 +270,7 @@ public class SettingsScene extends Scene implements ItemListener {
 		AudioDrive.Settings.set("game.sky", sky.valueAsString());
 		AudioDrive.Settings.set("game.difficulty", difficulty.valueAsString());
 		AudioDrive.Settings.set("track.smoothing", smoothing.valueAsString());
+		AudioDrive.Settings.set("track.parameterization", parameterization.valueAsString());
 		AudioDrive.Settings.set("block.collectable.color.static", staticCollectableColor.valueAsString());
 		AudioDrive.Settings.set("block.collectable.glowing", glowingCollectables.valueAsString());
 		AudioDrive.Settings.set("block.obstacle.color.static", staticObstacleColor.valueAsString());
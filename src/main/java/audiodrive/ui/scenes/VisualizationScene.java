@@ -2,12 +2,16 @@ package audiodrive.ui.scenes;
 
 import static org.lwjgl.opengl.GL11.*;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.lwjgl.input.Keyboard;
 
 import audiodrive.AudioDrive;
 import audiodrive.audio.AnalyzedAudio;
 import audiodrive.audio.AnalyzedChannel;
 import audiodrive.audio.Playback;
+import audiodrive.audio.Spectrogram;
 import audiodrive.model.buffer.VertexBuffer;
 import audiodrive.model.geometry.Color;
 import audiodrive.model.geometry.Vector;
@@ -23,7 +27,7 @@ import audiodrive.utilities.Log;
 public class VisualizationScene extends Scene {
 	
 	private enum Mode {
-		Normal, Direct, Logaritmic, Clamped
+		Normal, Direct, Logaritmic, Clamped, Aggregated
 	}
 	
 	private Text title;
@@ -60,6 +64,11 @@ public class VisualizationScene extends Scene {
 	private double scale = 1;
 	private int combine = 0;
 	
+	@Override
+	public Set<AnalyzedChannel.Feature> getRequiredFeatures() {
+		return EnumSet.of(AnalyzedChannel.Feature.Peaks);
+	}
+	
 	@Override
 	protected void entering() {
 		Log.info("Visualizing audio...");
@@ -77,7 +86,7 @@ public class VisualizationScene extends Scene {
 		rightSpectrum = new float[audio.getBandCount()];
 		newLeftSpectrum = new float[audio.getBandCount()];
 		newRightSpectrum = new float[audio.getBandCount()];
-		playback = new Playback(audio.getResource()).start();
+		playback = new Playback(audio).start();
 		
 		Camera.overlay(getWidth(), getHeight());
 		glDisable(GL_CULL_FACE);
@@ -100,8 +109,8 @@ public class VisualizationScene extends Scene {
 			break;
 		case Direct:
 			info.setText("Direct Mode");
-			System.arraycopy(leftChannel.getSpectrum(iteration), 0, leftSpectrum, 0, bands);
-			System.arraycopy(rightChannel.getSpectrum(iteration), 0, rightSpectrum, 0, bands);
+			leftChannel.getSpectrum(iteration).get(leftSpectrum, 0, bands);
+			rightChannel.getSpectrum(iteration).get(rightSpectrum, 0, bands);
 			break;
 		case Clamped:
 			info.setText("Clamped Mode");
@@ -110,6 +119,16 @@ public class VisualizationScene extends Scene {
 				newRightSpectrum[band] = rightChannel.getBands().get(band).getClamped(iteration);
 			}
 			break;
+		case Aggregated:
+			Spectrogram leftBands = leftChannel.getAggregatedBands();
+			Spectrogram rightBands = rightChannel.getAggregatedBands();
+			info.setText("Aggregated Mode (" + leftBands.getBandCount() + " bands)");
+			bands = leftBands.getBandCount();
+			for (int band = 0; band < bands; band++) {
+				newLeftSpectrum[band] = leftBands.column(band).getClamped(iteration);
+				newRightSpectrum[band] = rightBands.column(band).getClamped(iteration);
+			}
+			break;
 		case Logaritmic:
 			info.setText("Logaritmic Mode");
 			for (int band = 0; band < audio.getBandCount(); band++) {
@@ -121,7 +140,8 @@ public class VisualizationScene extends Scene {
 		
 		info.setText(info.getText() + String.format(" (scale %.1f)", scale));
 		
-		if (combine > 1) {
+		// aggregated bands are already combined
+		if (combine > 1 && mode != Mode.Aggregated) {
 			info.setText(info.getText() + " (combined " + combine + " bands)");
 			bands = Math.min(bands / combine + 1, bands);
 			float[] left = newLeftSpectrum;
@@ -253,7 +273,7 @@ public class VisualizationScene extends Scene {
 	
 	private void drawFrequencies() {
 		if (!showFrequencies || shader == null) return;
-		float[] spectrum = audio.getMix().getSpectrum(iteration);
+		Spectrogram spectrogram = audio.getMix().getSpectrogram();
 		glPolygonMode(GL_FRONT_AND_BACK, GL_FILL);
 		shader.bind();
 		shader.uniform("color").set(0.5, 0.5, 1.0);
@@ -264,7 +284,7 @@ public class VisualizationScene extends Scene {
 		shader.uniform("scale").set(0.01);
 		shader.uniform("numberOfBands").set(freqencies);
 		for (int i = 0; i < freqencies; i++) {
-			shader.uniform("bands[" + i + "].amplitude").set(spectrum[i]);
+			shader.uniform("bands[" + i + "].amplitude").set(spectrogram.get(iteration, i));
 			shader.uniform("bands[" + i + "].frequency").set(audio.getFrequencyOfBand(i) * 0.01);
 		}
 		canvas.draw();
@@ -319,6 +339,10 @@ public class VisualizationScene extends Scene {
 			if (mode == Mode.Direct) mode = Mode.Normal;
 			else mode = Mode.Direct;
 			break;
+		case Keyboard.KEY_A:
+			if (mode == Mode.Aggregated) mode = Mode.Normal;
+			else mode = Mode.Aggregated;
+			break;
 		case Keyboard.KEY_L:
 			if (mode == Mode.Logaritmic) mode = Mode.Normal;
 			else mode = Mode.Logaritmic;
@@ -349,11 +373,26 @@ public class VisualizationScene extends Scene {
 		case Keyboard.KEY_SUBTRACT:
 			speed = Arithmetic.clamp(speed - 0.1, 0, 50);
 			break;
+		case Keyboard.KEY_PRIOR:
+			scrub(-5);
+			break;
+		case Keyboard.KEY_NEXT:
+			scrub(5);
+			break;
+		case Keyboard.KEY_HOME:
+			scrub(-duration);
+			break;
 		default:
 			break;
 		}
 	}
 	
+	/** Jumps the given number of seconds back or forth. */
+	private void scrub(double seconds) {
+		duration = Arithmetic.clamp(duration + seconds, 0, audio.getDuration());
+		playback.seek(duration);
+	}
+	
 	@Override
 	public void mouseWheelRotated(int rotation, int x, int y) {
 		scale = Arithmetic.clamp(scale + Math.signum(rotation) * 0.1, 0.1, 10);